@@ -0,0 +1,91 @@
+package eu.clarussecure.dataoperations.homomorphic.benchmarks;
+
+import eu.clarussecure.dataoperations.homomorphic.KeyStore;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class BenchmarkData {
+    // Synthetic tables and security policies used by the benchmarks.
+    // The first column is a public identifier, the others are integer columns and a share of them
+    // is protected with the homomorphic module (all with the same key).
+    public static final String TABLE = "benchDB/bench/";
+    public static final String DATA_ID = "bench";
+
+    public static String[] attributeNames(int columns) {
+        String[] names = new String[columns];
+        names[0] = TABLE + "gid";
+        for (int j = 1; j < columns; j++) {
+            names[j] = TABLE + "c" + j;
+        }
+        return names;
+    }
+
+    public static int homomorphicColumns(int columns, double homomorphicShare) {
+        return (int) Math.round((columns - 1) * homomorphicShare);
+    }
+
+    public static Document policy(int columns, double homomorphicShare) throws ParserConfigurationException {
+        Document policy = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = policy.createElement("policy");
+        policy.appendChild(root);
+
+        String[] names = attributeNames(columns);
+        int homomorphic = homomorphicColumns(columns, homomorphicShare);
+        for (int j = 0; j < columns; j++) {
+            Element attribute = policy.createElement("attribute");
+            attribute.setAttribute("name", names[j]);
+            attribute.setAttribute("attribute_type", j >= 1 && j <= homomorphic ? "confidential" : "public");
+            attribute.setAttribute("data_type", "integer");
+            root.appendChild(attribute);
+        }
+
+        Element confidential = policy.createElement("attribute_type");
+        confidential.setAttribute("type", "confidential");
+        confidential.setAttribute("protection", "homomorphic");
+        confidential.setAttribute("id_key", DATA_ID);
+        root.appendChild(confidential);
+        Element unprotected = policy.createElement("attribute_type");
+        unprotected.setAttribute("type", "public");
+        unprotected.setAttribute("protection", "none");
+        root.appendChild(unprotected);
+        return policy;
+    }
+
+    public static String[][] rows(int rows, int columns) {
+        Random random = new Random(42);
+        String[][] data = new String[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            data[i][0] = Integer.toString(i + 1);
+            for (int j = 1; j < columns; j++) {
+                data[i][j] = Integer.toString(random.nextInt(10000));
+            }
+        }
+        return data;
+    }
+
+    public static Path useMemoryKeyStore(int keyLength) throws IOException {
+        // Point the KeyStore to a configuration using the in-memory backend, so no database is required
+        Path conf = Files.createTempFile("clarus-keystore-bench", ".conf");
+        String json = "{ CLARUS_keystore_backend: \"memory\", CLARUS_keystore_keylength: " + keyLength
+                + ", CLARUS_keystore_keygen_reserve: 0 }";
+        Files.write(conf, json.getBytes(StandardCharsets.UTF_8));
+        System.setProperty("clarus.keystore.conf", conf.toString());
+        return conf;
+    }
+
+    public static void releaseKeyStore(Path conf, int modules) throws IOException {
+        // Release the KeyStore references of the given number of modules (and the one taken here)
+        KeyStore keyStore = KeyStore.getInstance();
+        for (int i = 0; i <= modules; i++) {
+            keyStore.deleteInstance();
+        }
+        Files.deleteIfExists(conf);
+    }
+}
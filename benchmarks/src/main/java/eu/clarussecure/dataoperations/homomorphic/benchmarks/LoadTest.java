@@ -0,0 +1,249 @@
+package eu.clarussecure.dataoperations.homomorphic.benchmarks;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.DataOperationCommand;
+import eu.clarussecure.dataoperations.DataOperationResult;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicCommand;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicCriteria;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicModule;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicRemoteOperationCommand;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicResult;
+import eu.clarussecure.dataoperations.homomorphic.testing.HomomorphicCloud;
+import eu.clarussecure.dataoperations.homomorphic.testing.MeuseDataset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.xml.parsers.ParserConfigurationException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+public class LoadTest {
+    // Load generator: N concurrent clients send a mix of requests to the HomomorphicModule, whose commands are
+    // executed by a HomomorphicCloud holding a synthetic meuse table.
+    // Each request is timed from the outbound call of the module to its inbound call (including the cloud),
+    // and the latencies are recorded in a HdrHistogram per kind of request.
+    // Usage: LoadTest [rows] [clients] [seconds] [post:get:criteria:sum weights] [warmup seconds]
+    // The key store is configured as usual (e.g. -Dclarus.keystore.conf pointing to the in-memory backend).
+    public final static String[] REQUESTS = { "post", "get", "criteria", "sum" };
+    public final static int POST = 0, GET = 1, CRITERIA = 2, SUM = 3;
+    public final static int POST_ROWS = 100; // Rows inserted by each post request
+    public final static int CRITERIA_ROWS = 50; // Rows selected by each criteria request
+    public final static int SIGNIFICANT_DIGITS = 3;
+
+    private final HomomorphicModule module;
+    private final HomomorphicCloud cloud;
+    // The cloud is a single table: the posts are serialized, the reads are concurrent
+    private final ReadWriteLock cloudLock = new ReentrantReadWriteLock();
+    private final MeuseDataset dataset = new MeuseDataset(42);
+    private final String[] attributeNames = MeuseDataset.attributeNames();
+    private final AtomicInteger rows = new AtomicInteger();
+    private final int[] weights;
+    private final Recorder[] latencies = new Recorder[REQUESTS.length];
+    private final LongAdder[] failures = new LongAdder[REQUESTS.length];
+
+    public LoadTest(int rows, int[] weights) throws ParserConfigurationException {
+        this.weights = weights;
+        for (int k = 0; k < REQUESTS.length; k++) {
+            // The latencies are recorded in microseconds
+            this.latencies[k] = new Recorder(SIGNIFICANT_DIGITS);
+            this.failures[k] = new LongAdder();
+        }
+        this.module = new HomomorphicModule(MeuseDataset.policy());
+
+        // Load the initial table
+        List<DataOperationCommand> commands = this.module.post(this.attributeNames, this.dataset.rows(1, rows));
+        this.cloud = new HomomorphicCloud(commands.get(0).getProtectedAttributeNames());
+        // The criteria requests select the rows by gid
+        this.cloud.createSortedIndex(MeuseDataset.TABLE + "gid");
+        this.store(commands);
+        this.rows.set(rows);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        String mix = args.length > 3 ? args[3] : "1:2:4:2";
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        String[] parts = mix.split(":");
+        if (parts.length != REQUESTS.length) {
+            throw new IllegalArgumentException("The mix must give a weight to each request: post:get:criteria:sum");
+        }
+        int[] weights = new int[REQUESTS.length];
+        for (int k = 0; k < REQUESTS.length; k++) {
+            weights[k] = Integer.parseInt(parts[k].trim());
+        }
+
+        System.out.println(String.format("Loading %d rows...", rows));
+        LoadTest test = new LoadTest(rows, weights);
+        System.out.println(String.format("%d clients, mix %s, warmup %ds, measure %ds", clients, mix, warmup,
+                seconds));
+        Histogram[] histograms = test.run(clients, warmup, seconds);
+        test.report(histograms, seconds);
+        System.exit(0);
+    }
+
+    public Histogram[] run(int clients, int warmupSeconds, int seconds) throws InterruptedException {
+        // Run the clients for the warmup and the measurement, and return the latencies of the measurement
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            Thread client = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    this.request(this.pick(random), random);
+                }
+            }, "clarus-load-client-" + c);
+            client.start();
+            threads.add(client);
+        }
+
+        // Discard the latencies of the warmup
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+        for (int k = 0; k < REQUESTS.length; k++) {
+            this.latencies[k].reset();
+            this.failures[k].reset();
+        }
+        for (Thread client : threads) {
+            client.join();
+        }
+        Histogram[] histograms = new Histogram[REQUESTS.length];
+        for (int k = 0; k < REQUESTS.length; k++) {
+            histograms[k] = this.latencies[k].getIntervalHistogram();
+        }
+        return histograms;
+    }
+
+    public void report(Histogram[] histograms, int seconds) {
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        System.out.println(String.format("%-10s%10s%10s%10s%10s%10s%10s%10s%10s%10s", "request", "count", "req/s",
+                "mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "failures"));
+        for (int k = 0; k < REQUESTS.length; k++) {
+            this.printSummary(REQUESTS[k], histograms[k], seconds, this.failures[k].sum());
+            total.add(histograms[k]);
+        }
+        this.printSummary("total", total, seconds, 0);
+        System.out.println(String.format("Rows in the cloud: %d", this.rows.get()));
+
+        // Full distributions, in the HdrHistogram percentile format (in milliseconds)
+        for (int k = 0; k < REQUESTS.length; k++) {
+            if (histograms[k].getTotalCount() > 0) {
+                System.out.println();
+                System.out.println("Latency distribution of " + REQUESTS[k] + " (ms):");
+                histograms[k].outputPercentileDistribution(System.out, 1000.0);
+            }
+        }
+    }
+
+    private void printSummary(String request, Histogram histogram, int seconds, long failures) {
+        System.out.println(String.format(Locale.ROOT, "%-10s%10d%10.1f%10.2f%10.2f%10.2f%10.2f%10.2f%10.2f%10d",
+                request, histogram.getTotalCount(), (double) histogram.getTotalCount() / seconds,
+                histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0, failures));
+    }
+
+    private int pick(Random random) {
+        // Choose the kind of the next request according to the weights of the mix
+        int sum = 0;
+        for (int weight : this.weights) {
+            sum += weight;
+        }
+        int value = random.nextInt(sum);
+        for (int k = 0; k < this.weights.length; k++) {
+            value -= this.weights[k];
+            if (value < 0) {
+                return k;
+            }
+        }
+        return this.weights.length - 1;
+    }
+
+    private void request(int kind, Random random) {
+        long start = System.nanoTime();
+        try {
+            switch (kind) {
+            case POST:
+                this.post();
+                break;
+            case GET:
+                this.get(null);
+                break;
+            case CRITERIA:
+                // Select the last rows of the table (by gid)
+                int threshold = Math.max(1, this.rows.get() - CRITERIA_ROWS + 1);
+                this.get(new Criteria[] {
+                        new Criteria(MeuseDataset.TABLE + "gid", ">=", Integer.toString(threshold)) });
+                break;
+            case SUM:
+                String column = MeuseDataset.HOMOMORPHIC_COLUMNS[random
+                        .nextInt(MeuseDataset.HOMOMORPHIC_COLUMNS.length)];
+                this.sum(MeuseDataset.TABLE + column);
+                break;
+            default:
+                throw new UnsupportedOperationException("Request not supported: " + kind);
+            }
+            this.latencies[kind].recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            this.failures[kind].increment();
+        }
+    }
+
+    private void post() {
+        // Insert new rows at the end of the table
+        int first = this.rows.getAndAdd(POST_ROWS) + 1;
+        this.store(this.module.post(this.attributeNames, this.dataset.rows(first, POST_ROWS)));
+    }
+
+    private void store(List<DataOperationCommand> commands) {
+        this.cloudLock.writeLock().lock();
+        try {
+            for (DataOperationCommand command : commands) {
+                this.cloud.addRows(command.getProtectedContents(),
+                        ((HomomorphicCommand) command).getCiphertextColumns());
+            }
+        } finally {
+            this.cloudLock.writeLock().unlock();
+        }
+    }
+
+    private String[][] get(Criteria[] criteria) {
+        List<DataOperationCommand> commands = this.module.get(this.attributeNames, criteria);
+        List<String[][]> results = new ArrayList<>();
+        this.cloudLock.readLock().lock();
+        try {
+            for (DataOperationCommand command : commands) {
+                results.add(this.cloud.getRows(command.getProtectedAttributeNames(), command.getCriteria()));
+            }
+        } finally {
+            this.cloudLock.readLock().unlock();
+        }
+        List<DataOperationResult> response = this.module.get(commands, results);
+        return ((HomomorphicResult) response.get(0)).getDecryptedContent();
+    }
+
+    private String[][] sum(String attributeName) {
+        List<DataOperationCommand> commands = this.module.get(this.attributeNames,
+                new Criteria[] { HomomorphicCriteria.getInstance("+", attributeName) });
+        List<String[][]> results = new ArrayList<>();
+        this.cloudLock.readLock().lock();
+        try {
+            for (DataOperationCommand command : commands) {
+                results.add(this.cloud.performHomomorphicComputation(command.getProtectedAttributeNames(),
+                        command.getCriteria(), (HomomorphicRemoteOperationCommand) command));
+            }
+        } finally {
+            this.cloudLock.readLock().unlock();
+        }
+        List<DataOperationResult> response = this.module.get(commands, results);
+        return ((HomomorphicResult) response.get(0)).getDecryptedContent();
+    }
+}
@@ -0,0 +1,127 @@
+package eu.clarussecure.dataoperations.homomorphic.benchmarks;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.DataOperationCommand;
+import eu.clarussecure.dataoperations.DataOperationResult;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicCommand;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicCriteria;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicModule;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicRemoteOperationCommand;
+import eu.clarussecure.dataoperations.homomorphic.testing.HomomorphicCloud;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModuleBenchmark {
+    // Operations of the HomomorphicModule and of the testing cloud, on synthetic tables.
+    // The keys are kept in the in-memory key store.
+    public static final int COLUMNS = 9;
+
+    @Param({ "1024", "2048" })
+    public int keyLength;
+
+    @Param({ "100", "1000" })
+    public int rows;
+
+    @Param({ "0.25", "0.5", "1.0" })
+    public double homomorphicShare;
+
+    private Path conf;
+    private HomomorphicModule module;
+    private String[] attributeNames;
+    private String[][] contents;
+    private HomomorphicCloud cloud;
+    private String[] protectedAttributeNames;
+    private List<DataOperationCommand> getPromise;
+    private List<String[][]> getContents;
+    private Criteria[] criteria;
+    private HomomorphicRemoteOperationCommand sumCommand;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.conf = BenchmarkData.useMemoryKeyStore(this.keyLength);
+        this.module = new HomomorphicModule(BenchmarkData.policy(COLUMNS, this.homomorphicShare));
+        this.attributeNames = BenchmarkData.attributeNames(COLUMNS);
+        this.contents = BenchmarkData.rows(this.rows, COLUMNS);
+
+        // Store the protected table in the cloud
+        List<DataOperationCommand> post = this.module.post(this.attributeNames, this.contents);
+        this.protectedAttributeNames = post.get(0).getProtectedAttributeNames();
+        this.cloud = new HomomorphicCloud(this.protectedAttributeNames);
+        for (DataOperationCommand command : post) {
+            this.cloud.addRows(command.getProtectedContents(), ((HomomorphicCommand) command).getCiphertextColumns());
+        }
+
+        // Prepare the retrieval of the whole table
+        this.getPromise = this.module.get(this.attributeNames, null);
+        this.getContents = new ArrayList<>();
+        for (DataOperationCommand command : this.getPromise) {
+            this.getContents.add(this.cloud.getRows(command.getProtectedAttributeNames(), command.getCriteria()));
+        }
+        this.criteria = new Criteria[] { new Criteria(this.attributeNames[0], ">=", Integer.toString(this.rows / 2)) };
+
+        // Prepare a homomorphic sum of the first protected column (if any)
+        int homomorphic = BenchmarkData.homomorphicColumns(COLUMNS, this.homomorphicShare);
+        if (homomorphic > 0) {
+            Criteria sum = HomomorphicCriteria.getInstance("+", this.attributeNames[1]);
+            this.sumCommand = (HomomorphicRemoteOperationCommand) this.module
+                    .get(this.attributeNames, new Criteria[] { sum }).get(0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.releaseKeyStore(this.conf, 1);
+    }
+
+    @Benchmark
+    public List<DataOperationCommand> post() {
+        return this.module.post(this.attributeNames, this.contents);
+    }
+
+    @Benchmark
+    public List<DataOperationResult> get() {
+        return this.module.get(this.getPromise, this.getContents);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> head() {
+        // Exercises buildAttributesMapping
+        return this.module.head(this.attributeNames);
+    }
+
+    @Benchmark
+    public String[][] cloudGetRows() {
+        return this.cloud.getRows(this.protectedAttributeNames, this.criteria);
+    }
+
+    @Benchmark
+    public String[][] cloudHomomorphicSum() {
+        if (this.sumCommand == null) {
+            return null;
+        }
+        return this.cloud.performHomomorphicComputation(this.sumCommand.getProtectedAttributeNames(),
+                this.sumCommand.getCriteria(), this.sumCommand);
+    }
+}
@@ -0,0 +1,87 @@
+package eu.clarussecure.dataoperations.homomorphic.benchmarks;
+
+import eu.clarussecure.dataoperations.homomorphic.PaillierCrtKey;
+import eu.clarussecure.dataoperations.homomorphic.ParallelKeyGenerator;
+import eu.clarussecure.dataoperations.homomorphic.RandomizerPool;
+import eu.clarussecure.encryption.paillier.EncryptedInteger;
+import eu.clarussecure.encryption.paillier.KeyPair;
+import eu.clarussecure.encryption.paillier.Paillier;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaillierBenchmark {
+    // Cost of the Paillier primitives: the library encryption/decryption and the faster paths of the module
+    // (precomputed randomizers and CRT decryption)
+
+    @Param({ "1024", "2048", "3072" })
+    public int keyLength;
+
+    private ParallelKeyGenerator generator;
+    private PaillierCrtKey crtKey;
+    private KeyPair keyPair;
+    private ExecutorService refiller;
+    private RandomizerPool pool;
+    private BigInteger plaintext;
+    private EncryptedInteger ciphertext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.generator = new ParallelKeyGenerator(Runtime.getRuntime().availableProcessors());
+        this.crtKey = this.generator.generate(this.keyLength);
+        this.keyPair = this.crtKey.getKeyPair();
+        this.refiller = Executors.newSingleThreadExecutor();
+        // The pool is refilled in the background: the benchmark also measures how it keeps up
+        this.pool = new RandomizerPool(this.keyPair.getPublic(), 64, 1024, this.refiller);
+        this.plaintext = BigInteger.valueOf(new Random(42).nextInt(10000));
+        this.ciphertext = Paillier.encrypt(this.keyPair.getPublic(), this.plaintext);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.pool.close();
+        this.refiller.shutdownNow();
+        this.generator.shutdown();
+    }
+
+    @Benchmark
+    public EncryptedInteger libraryEncrypt() {
+        return Paillier.encrypt(this.keyPair.getPublic(), this.plaintext);
+    }
+
+    @Benchmark
+    public BigInteger libraryDecrypt() {
+        return Paillier.decrypt(this.keyPair.getSecret(), this.ciphertext);
+    }
+
+    @Benchmark
+    public EncryptedInteger poolEncrypt() {
+        return this.pool.encrypt(this.plaintext);
+    }
+
+    @Benchmark
+    public BigInteger crtDecrypt() {
+        return this.crtKey.decrypt(this.ciphertext);
+    }
+}
@@ -0,0 +1,106 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.encryption.paillier.PublicKey;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+public class CiphertextColumn {
+    // Binary encoding of the ciphertexts of a single protected attribute.
+    // The ciphertexts are stored contiguously in a ByteBuffer, as fixed-width big-endian unsigned
+    // integers (the width is the length of n^2 in bytes), instead of Base64 strings.
+    // A ciphertext is never zero, so a cell filled with zeros represents a missing value.
+
+    private final String protectedAttributeName;
+    private final int width;
+    private final int rows;
+    private final ByteBuffer buffer;
+
+    public CiphertextColumn(String protectedAttributeName, int rows, int width) {
+        this(protectedAttributeName, width, ByteBuffer.allocate(rows * width));
+    }
+
+    public CiphertextColumn(String protectedAttributeName, int width, ByteBuffer buffer) {
+        if (buffer.remaining() % width != 0) {
+            throw new IllegalArgumentException("The buffer does not contain ciphertexts of " + width + " bytes");
+        }
+        this.protectedAttributeName = protectedAttributeName;
+        this.width = width;
+        this.rows = buffer.remaining() / width;
+        this.buffer = buffer.slice();
+    }
+
+    public static int widthFor(PublicKey pk) {
+        // Ciphertexts are smaller than n^2
+        return (pk.getN().multiply(pk.getN()).bitLength() + 7) / 8;
+    }
+
+    public String getProtectedAttributeName() {
+        return this.protectedAttributeName;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public ByteBuffer getBuffer() {
+        // Read-only view of the whole column
+        return this.buffer.asReadOnlyBuffer();
+    }
+
+    public void set(int row, BigInteger ciphertext) {
+        byte[] bytes = ciphertext.toByteArray();
+        // Skip the sign byte of BigInteger.toByteArray (if any)
+        int start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        int length = bytes.length - start;
+        if (ciphertext.signum() < 0 || length > this.width) {
+            throw new IllegalArgumentException("The ciphertext does not fit in " + this.width + " bytes");
+        }
+        // Left-pad the value with zeros
+        byte[] cell = new byte[this.width];
+        System.arraycopy(bytes, start, cell, this.width - length, length);
+        this.write(row, cell);
+    }
+
+    public void set(int row, String base64Ciphertext) {
+        // Convert a Base64-encoded ciphertext
+        if (base64Ciphertext != null) {
+            this.set(row, new BigInteger(Base64.getDecoder().decode(base64Ciphertext)));
+        }
+    }
+
+    public BigInteger get(int row) {
+        byte[] cell = new byte[this.width];
+        this.read(row, cell);
+        BigInteger ciphertext = new BigInteger(1, cell);
+        return ciphertext.signum() == 0 ? null : ciphertext;
+    }
+
+    public String getBase64(int row) {
+        // Base64 encoding of the ciphertext, as in the String contents
+        BigInteger ciphertext = this.get(row);
+        return ciphertext != null ? Base64.getEncoder().encodeToString(ciphertext.toByteArray()) : null;
+    }
+
+    @Override
+    public String toString() {
+        return this.protectedAttributeName + "[" + this.rows + " x " + this.width + " bytes]";
+    }
+
+    private void write(int row, byte[] cell) {
+        // Absolute positioning, so concurrent writes of different rows are safe
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(row * this.width);
+        view.put(cell);
+    }
+
+    private void read(int row, byte[] cell) {
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(row * this.width);
+        view.get(cell);
+    }
+}
@@ -0,0 +1,45 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.dataoperations.Criteria;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompositeCriteria extends Criteria {
+    // Composition of criteria with the "and" or the "or" semantics
+    // (the criteria given to an operation are combined with the "and" semantics).
+    // The composed criteria are protected like the other ones, and the composition is kept in the command.
+    private final Criteria[] criteria;
+
+    private CompositeCriteria(String operator, Criteria[] criteria) {
+        super("", operator, null);
+        this.criteria = criteria;
+    }
+
+    public static CompositeCriteria getInstance(String operator, Criteria... criteria) {
+        switch (operator) {
+        case "and":
+        case "or":
+            return new CompositeCriteria(operator, criteria);
+        default:
+            throw new UnsupportedOperationException("The composition '" + operator + "' is not supported");
+        }
+    }
+
+    public Criteria[] getCriteria() {
+        return this.criteria;
+    }
+
+    public static List<Criteria> flatten(List<Criteria> criteria) {
+        // The simple criteria found in the given ones (at any level of composition)
+        List<Criteria> simple = new ArrayList<>();
+        for (Criteria criterion : criteria) {
+            if (criterion instanceof CompositeCriteria) {
+                simple.addAll(flatten(Arrays.asList(((CompositeCriteria) criterion).getCriteria())));
+            } else {
+                simple.add(criterion);
+            }
+        }
+        return simple;
+    }
+}
@@ -0,0 +1,212 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CryptoExecutor {
+    // Threads running the encryptions and decryptions of the module.
+    // The tasks are queued per tenant (i.e. per dataID) and the threads serve the tenants with pending tasks
+    // in turns, so a large request of a tenant does not delay the requests of the others.
+    // The queue of each tenant is bounded: when it is full, the caller waits (up to a timeout) for room
+    // in the queue, and the tasks are rejected if it is still full after the timeout.
+
+    private final int queueSize;
+    private final long queueTimeoutMillis;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Map<String, TenantQueue> tenants = new ConcurrentHashMap<>();
+    // Tenants with pending tasks, in the order they will be served
+    private final BlockingQueue<TenantQueue> ready = new LinkedBlockingQueue<>();
+    private volatile boolean shutdown;
+
+    // Metrics
+    private final LongAdder executedTasks = new LongAdder();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public CryptoExecutor(int threads, int queueSize, long queueTimeoutMillis) {
+        this.queueSize = queueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "clarus-homomorphic-crypto-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            this.workers.add(worker);
+        }
+    }
+
+    public void runAll(String tenant, List<Runnable> tasks) {
+        this.runAll(Collections.singletonMap(tenant, tasks));
+    }
+
+    public void runAll(Map<String, List<Runnable>> tasksByTenant) {
+        // Run the given tasks (of one or several tenants) and wait until all of them are finished
+        List<Map.Entry<String, Runnable>> tasks = new ArrayList<>();
+        tasksByTenant.forEach((tenant, tenantTasks) -> tenantTasks
+                .forEach(task -> tasks.add(new AbstractMap.SimpleImmutableEntry<>(tenant, task))));
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (this.workers.contains(Thread.currentThread())) {
+            // Nested call from a task: waiting for other tasks could exhaust the threads
+            tasks.forEach(task -> task.getValue().run());
+            return;
+        }
+        if (this.shutdown) {
+            throw new RejectedExecutionException("The crypto executor is shut down");
+        }
+        CountDownLatch done = new CountDownLatch(tasks.size());
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        int submitted = 0;
+        try {
+            for (Map.Entry<String, Runnable> entry : tasks) {
+                String tenant = entry.getKey();
+                Runnable task = entry.getValue();
+                TenantQueue queue = this.tenants.computeIfAbsent(tenant, tenantName -> new TenantQueue());
+                // Slow down the caller while the queue of the tenant is full
+                if (!queue.permits.tryAcquire(this.queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    this.rejectedTasks.add(tasks.size() - submitted);
+                    throw new RejectedExecutionException("The crypto queue of " + tenant + " is full");
+                }
+                long queued = System.nanoTime();
+                queue.tasks.offer(() -> {
+                    long wait = System.nanoTime() - queued;
+                    this.waitNanos.add(wait);
+                    this.maxWaitNanos.accumulateAndGet(wait, Math::max);
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        errors.add(e);
+                    } finally {
+                        this.executedTasks.increment();
+                        done.countDown();
+                    }
+                });
+                submitted++;
+                this.schedule(queue);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while queueing the crypto tasks", e);
+        } finally {
+            // Wait for the tasks already queued (even if the others were rejected)
+            for (int i = submitted; i < tasks.size(); i++) {
+                done.countDown();
+            }
+            this.await(done);
+        }
+
+        Throwable error = errors.peek();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error != null) {
+            throw (Error) error;
+        }
+    }
+
+    public void shutdown() {
+        this.shutdown = true;
+        this.workers.forEach(Thread::interrupt);
+        // Run the tasks left in the queues, so no caller waits forever
+        this.tenants.values().forEach(queue -> {
+            Runnable task;
+            while ((task = queue.tasks.poll()) != null) {
+                task.run();
+            }
+        });
+    }
+
+    public int getThreads() {
+        return this.workers.size();
+    }
+
+    public int getQueuedTasks() {
+        return this.tenants.values().stream().mapToInt(queue -> queue.tasks.size()).sum();
+    }
+
+    public int getQueuedTasks(String tenant) {
+        TenantQueue queue = this.tenants.get(tenant);
+        return queue != null ? queue.tasks.size() : 0;
+    }
+
+    public long getExecutedTasks() {
+        return this.executedTasks.sum();
+    }
+
+    public long getRejectedTasks() {
+        return this.rejectedTasks.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long executed = this.executedTasks.sum();
+        return executed > 0 ? this.waitNanos.sum() / 1e6 / executed : 0;
+    }
+
+    public double getMaxWaitMillis() {
+        return this.maxWaitNanos.get() / 1e6;
+    }
+
+    private void schedule(TenantQueue queue) {
+        // Add the tenant to the turns, unless it is already waiting for its turn
+        if (!queue.tasks.isEmpty() && queue.scheduled.compareAndSet(false, true)) {
+            this.ready.offer(queue);
+        }
+    }
+
+    private void work() {
+        while (!this.shutdown) {
+            TenantQueue queue;
+            try {
+                queue = this.ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Runnable task = queue.tasks.poll();
+            // Give the turn to the next tenant: this one goes back to the end of the turns if it has more tasks
+            queue.scheduled.set(false);
+            this.schedule(queue);
+            if (task != null) {
+                queue.permits.release();
+                task.run();
+            }
+        }
+    }
+
+    private void await(CountDownLatch done) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                // The tasks write into the results of the caller: wait for them anyway
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class TenantQueue {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Semaphore permits = new Semaphore(CryptoExecutor.this.queueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    }
+}
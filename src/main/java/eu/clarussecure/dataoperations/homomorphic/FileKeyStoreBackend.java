@@ -0,0 +1,204 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.bson.Document;
+
+public class FileKeyStoreBackend implements KeyStoreBackend {
+    // Key documents stored in a local file, one JSON document per line.
+    // The whole file is memory-mapped and loaded at startup, so the keys are read from memory.
+    // New and updated keys are appended to the file: when a dataID appears several times,
+    // the last document is the valid one. The superseded documents are removed by rewriting the file (when it is
+    // loaded, and when they outnumber the valid ones).
+    // The file holds the secret keys: it is only readable and writable by its owner.
+    // The writers update the keys in memory and append them to the file under the same lock, so both have the
+    // same order of updates.
+    private final static Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+    private String keyFile = "/etc/clarus/clarus-keystore.keys"; // Default key file
+    private final Map<String, Document> keys = new ConcurrentHashMap<>();
+    private final Path path;
+    private FileChannel channel;
+    private Document keyLengthConf = null; // Configuration document of the key length
+    private Integer keyLength = null;
+    private int superseded = 0; // Documents of the file replaced by a later one
+
+    public FileKeyStoreBackend(Document configuration) {
+        if (configuration.containsKey("CLARUS_keystore_file")) {
+            this.keyFile = configuration.getString("CLARUS_keystore_file");
+        }
+        // The key length can be given in the configuration, when the file does not store one
+        if (configuration.containsKey("CLARUS_keystore_keylength")) {
+            this.keyLength = configuration.getInteger("CLARUS_keystore_keylength");
+        }
+        this.path = Paths.get(this.keyFile);
+        try {
+            // Load the existing keys
+            if (Files.exists(this.path)) {
+                this.restrictPermissions(this.path);
+                this.load(this.path);
+            } else {
+                this.createFile(this.path);
+            }
+            if (this.superseded > 0) {
+                this.compact();
+            }
+            // Open the file to append the new keys
+            this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("CLARUS key file could not be processed", e);
+        }
+    }
+
+    @Override
+    public Document findKey(String dataID) {
+        return this.keys.get(dataID);
+    }
+
+    @Override
+    public List<Document> findKeysWithout(String field) {
+        return this.keys.values().stream().filter(key -> !key.containsKey(field)).collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized boolean storeKey(String dataID, Document key) {
+        return this.append(key, this.keys.put(dataID, key) != null);
+    }
+
+    @Override
+    public synchronized boolean updateKey(String dataID, Document fields) {
+        Document key = this.keys.computeIfPresent(dataID, (id, current) -> {
+            Document updated = new Document(current);
+            updated.putAll(fields);
+            return updated;
+        });
+        return key != null && this.append(key, true);
+    }
+
+    @Override
+    public Integer findKeyLength() {
+        return this.keyLength;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+            String content = StandardCharsets.UTF_8.decode(buffer).toString();
+
+            for (String line : content.split("\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Document doc = Document.parse(line);
+                if (doc.containsKey("dataID")) {
+                    if (this.keys.put(doc.getString("dataID"), doc) != null) {
+                        this.superseded++;
+                    }
+                } else if ("homomorphic-keylength".equals(doc.getString("conf"))) {
+                    // Same configuration document as in the Mongo key store
+                    if (this.keyLengthConf != null) {
+                        this.superseded++;
+                    }
+                    this.keyLengthConf = doc;
+                    this.keyLength = ((Number) doc.get("keylength")).intValue();
+                } else {
+                    // Unknown documents are not kept
+                    this.superseded++;
+                }
+            }
+        }
+    }
+
+    private void restrictPermissions(Path path) throws IOException {
+        // An existing key file readable by other users is made private, or refused if that is not possible
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+        if (!OWNER_ONLY.containsAll(permissions)) {
+            try {
+                Files.setPosixFilePermissions(path, OWNER_ONLY);
+            } catch (IOException | SecurityException e) {
+                throw new IOException("The CLARUS key file " + path + " is accessible by other users ("
+                        + PosixFilePermissions.toString(permissions) + ") and its permissions cannot be restricted",
+                        e);
+            }
+        }
+    }
+
+    private void createFile(Path path) throws IOException {
+        // The file is created private (instead of using the umask)
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } else {
+            Files.createFile(path);
+        }
+    }
+
+    private synchronized void compact() throws IOException {
+        // Write the valid documents in a new (private) file, which replaces the current one
+        Path compacted = this.path.resolveSibling(this.path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        this.createFile(compacted);
+        try (FileChannel output = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            StringBuilder content = new StringBuilder();
+            if (this.keyLengthConf != null) {
+                content.append(this.keyLengthConf.toJson()).append("\n");
+            }
+            for (Document key : this.keys.values()) {
+                content.append(key.toJson()).append("\n");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            output.force(true);
+        }
+        Files.move(compacted, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.superseded = 0;
+    }
+
+    private synchronized boolean append(Document doc, boolean supersedes) {
+        try {
+            this.channel.write(ByteBuffer.wrap((doc.toJson() + "\n").getBytes(StandardCharsets.UTF_8)));
+            this.channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        // Rewrite the file when most of its documents are superseded
+        if (supersedes && ++this.superseded > this.keys.size()) {
+            try {
+                this.channel.close();
+                this.compact();
+                this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new RuntimeException("CLARUS key file could not be compacted", e);
+            }
+        }
+        return true;
+    }
+}
@@ -5,9 +5,16 @@ import eu.clarussecure.dataoperations.DataOperationCommand;
 import java.util.Map;
 
 public class HomomorphicCommand extends DataOperationCommand {
+    // Ciphertexts of the attributes using the binary encoding (the cells in the protected contents are null)
+    protected CiphertextColumn[] ciphertextColumns;
 
     public HomomorphicCommand(String[] attributeNames, String[] protectedAttributeNames, String[][] protectedContents,
             Map<String, String> mapping, Criteria[] criteria) {
+        this(attributeNames, protectedAttributeNames, protectedContents, mapping, criteria, null);
+    }
+
+    public HomomorphicCommand(String[] attributeNames, String[] protectedAttributeNames, String[][] protectedContents,
+            Map<String, String> mapping, Criteria[] criteria, CiphertextColumn[] ciphertextColumns) {
         this.protectedAttributeNames = protectedAttributeNames;
         this.attributeNames = attributeNames;
         this.extraBinaryContent = null;
@@ -15,5 +22,10 @@ public class HomomorphicCommand extends DataOperationCommand {
         this.protectedContents = protectedContents;
         this.mapping = mapping;
         this.criteria = criteria;
+        this.ciphertextColumns = ciphertextColumns;
+    }
+
+    public CiphertextColumn[] getCiphertextColumns() {
+        return this.ciphertextColumns;
     }
 }
@@ -6,16 +6,26 @@ public class HomomorphicCriteria extends Criteria {
     // This implementation is only intended to limit the supported operations
     // over homomophically encrypted values.
     // The constructor is private, but is provides a factory interface.
-    private HomomorphicCriteria(String attributeName, String operator, String value) {
+    // The operation can be computed by group of rows, having the same values of the given (plaintext) attributes.
+    private final String[] groupBy;
+
+    private HomomorphicCriteria(String attributeName, String operator, String value, String[] groupBy) {
         super(attributeName, operator, value);
+        this.groupBy = groupBy;
+    }
+
+    public String[] getGroupBy() {
+        return this.groupBy;
     }
 
-    public static HomomorphicCriteria getInstance(String operator, String attributeName) {
+    public static HomomorphicCriteria getInstance(String operator, String attributeName, String... groupBy) {
         // Extend this case to support more operators.
         switch (operator) {
         case "+":
         case "*":
-            return new HomomorphicCriteria(attributeName, operator, null);
+        case "count":
+        case "avg":
+            return new HomomorphicCriteria(attributeName, operator, null, groupBy);
         default:
             throw new UnsupportedOperationException("The homomrphic operation '" + operator + "' is not supported");
         }
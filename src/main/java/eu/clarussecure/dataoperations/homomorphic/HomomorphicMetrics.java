@@ -0,0 +1,218 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class HomomorphicMetrics implements HomomorphicMetricsMXBean {
+    // Counters and timers of the module, per operation and per dataID.
+    // They are kept in LongAdders (no lock and no contention between the threads) found with two lookups in
+    // concurrent maps, so recording a metric does not allocate anything once the dataID is known.
+    // The metrics are exposed through JMX and forwarded to the registered sinks (if any).
+
+    public static final String OBJECT_NAME = "eu.clarussecure.dataoperations.homomorphic:type=HomomorphicMetrics";
+    private static final Metric[] METRICS = Metric.values();
+    private static HomomorphicMetrics instance = null;
+
+    // Counters indexed by operation, then by dataID
+    private final Map<String, Map<String, Counters>> counters = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+    // Source of the KeyStore gauges, set by the KeyStore itself
+    private volatile KeyStore keyStore;
+
+    private HomomorphicMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException | SecurityException e) {
+            // The metrics are still recorded and forwarded to the sinks
+            Logger.getLogger(HomomorphicMetrics.class.getName()).log(Level.WARNING,
+                    "The homomorphic metrics could not be registered in JMX", e);
+        }
+    }
+
+    public static synchronized HomomorphicMetrics getInstance() {
+        if (HomomorphicMetrics.instance == null) {
+            HomomorphicMetrics.instance = new HomomorphicMetrics();
+        }
+        return HomomorphicMetrics.instance;
+    }
+
+    public void addSink(MetricsSink sink) {
+        this.sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        this.sinks.remove(sink);
+    }
+
+    void setKeyStore(KeyStore keyStore) {
+        this.keyStore = keyStore;
+    }
+
+    public void add(String operation, String dataID, Metric metric, long value) {
+        // The attributes without dataID are counted together
+        dataID = dataID != null ? dataID : "";
+        this.countersOf(operation, dataID).values[metric.ordinal()].add(value);
+        this.forward(operation, dataID, metric, value);
+    }
+
+    public void time(String operation, String dataID, long nanos, boolean failed) {
+        // Record a request of the given operation and its duration
+        dataID = dataID != null ? dataID : "";
+        Counters counters = this.countersOf(operation, dataID);
+        counters.values[Metric.REQUESTS.ordinal()].increment();
+        counters.values[Metric.TIME_NANOS.ordinal()].add(nanos);
+        counters.maxNanos.accumulateAndGet(nanos, Math::max);
+        this.forward(operation, dataID, Metric.REQUESTS, 1);
+        this.forward(operation, dataID, Metric.TIME_NANOS, nanos);
+        if (failed) {
+            counters.values[Metric.FAILURES.ordinal()].increment();
+            this.forward(operation, dataID, Metric.FAILURES, 1);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        this.counters.forEach((operation, byDataID) -> byDataID.forEach((dataID, counters) -> {
+            for (Metric metric : METRICS) {
+                long value = counters.values[metric.ordinal()].sum();
+                if (value != 0) {
+                    values.put(operation + "/" + dataID + "/" + metric.getName(), value);
+                }
+            }
+        }));
+        return values;
+    }
+
+    @Override
+    public long getCounter(String operation, String dataID, String metric) {
+        Map<String, Counters> byDataID = this.counters.get(operation);
+        Counters counters = byDataID != null ? byDataID.get(dataID) : null;
+        return counters != null ? counters.values[this.metricNamed(metric).ordinal()].sum() : 0;
+    }
+
+    @Override
+    public long getTotal(String operation, String metric) {
+        Map<String, Counters> byDataID = this.counters.get(operation);
+        if (byDataID == null) {
+            return 0;
+        }
+        int index = this.metricNamed(metric).ordinal();
+        return byDataID.values().stream().mapToLong(counters -> counters.values[index].sum()).sum();
+    }
+
+    @Override
+    public double getAverageMillis(String operation) {
+        long requests = this.getTotal(operation, Metric.REQUESTS.getName());
+        return requests > 0 ? this.getTotal(operation, Metric.TIME_NANOS.getName()) / 1e6 / requests : 0;
+    }
+
+    @Override
+    public double getMaxMillis(String operation) {
+        Map<String, Counters> byDataID = this.counters.get(operation);
+        if (byDataID == null) {
+            return 0;
+        }
+        return byDataID.values().stream().mapToLong(counters -> counters.maxNanos.get()).max().orElse(0) / 1e6;
+    }
+
+    @Override
+    public long getKeyCacheHits() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getKeyCacheHits() : 0;
+    }
+
+    @Override
+    public long getKeyCacheMisses() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getKeyCacheMisses() : 0;
+    }
+
+    @Override
+    public long getGeneratedKeys() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getKeyGenerator().getGeneratedKeys() : 0;
+    }
+
+    @Override
+    public int getCryptoQueuedTasks() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getCryptoExecutor().getQueuedTasks() : 0;
+    }
+
+    @Override
+    public long getCryptoRejectedTasks() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getCryptoExecutor().getRejectedTasks() : 0;
+    }
+
+    @Override
+    public double getCryptoAverageWaitMillis() {
+        KeyStore keyStore = this.keyStore;
+        return keyStore != null ? keyStore.getCryptoExecutor().getAverageWaitMillis() : 0;
+    }
+
+    @Override
+    public void reset() {
+        this.counters.clear();
+    }
+
+    private Counters countersOf(String operation, String dataID) {
+        Map<String, Counters> byDataID = this.counters.get(operation);
+        if (byDataID == null) {
+            byDataID = this.counters.computeIfAbsent(operation, op -> new ConcurrentHashMap<>());
+        }
+        Counters counters = byDataID.get(dataID);
+        if (counters == null) {
+            counters = byDataID.computeIfAbsent(dataID, id -> new Counters());
+        }
+        return counters;
+    }
+
+    private void forward(String operation, String dataID, Metric metric, long value) {
+        for (MetricsSink sink : this.sinks) {
+            try {
+                sink.record(operation, dataID, metric, value);
+            } catch (RuntimeException e) {
+                // A faulty sink must not break the operations of the module
+                Logger.getLogger(HomomorphicMetrics.class.getName()).log(Level.WARNING,
+                        "Metrics sink " + sink + " failed", e);
+            }
+        }
+    }
+
+    private Metric metricNamed(String name) {
+        for (Metric metric : METRICS) {
+            if (metric.getName().equals(name)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("Unknown metric " + name);
+    }
+
+    private static class Counters {
+        private final LongAdder[] values = new LongAdder[METRICS.length];
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Counters() {
+            for (int i = 0; i < this.values.length; i++) {
+                this.values[i] = new LongAdder();
+            }
+        }
+    }
+}
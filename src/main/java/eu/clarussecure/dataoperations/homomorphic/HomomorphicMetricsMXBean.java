@@ -0,0 +1,34 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.Map;
+
+public interface HomomorphicMetricsMXBean {
+    // Management interface of HomomorphicMetrics
+
+    // All the counters, indexed by "operation/dataID/metric"
+    Map<String, Long> getCounters();
+
+    long getCounter(String operation, String dataID, String metric);
+
+    // Totals of all the dataIDs
+    long getTotal(String operation, String metric);
+
+    double getAverageMillis(String operation);
+
+    double getMaxMillis(String operation);
+
+    // Gauges of the KeyStore (0 if there is no KeyStore)
+    long getKeyCacheHits();
+
+    long getKeyCacheMisses();
+
+    long getGeneratedKeys();
+
+    int getCryptoQueuedTasks();
+
+    long getCryptoRejectedTasks();
+
+    double getCryptoAverageWaitMillis();
+
+    void reset();
+}
@@ -12,16 +12,24 @@ import eu.clarussecure.encryption.paillier.KeyPair;
 import eu.clarussecure.encryption.paillier.Paillier;
 import eu.clarussecure.encryption.paillier.PublicKey;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -38,13 +46,22 @@ public class HomomorphicModule implements DataOperation{
     // This string is a flag to identify attributes that are not covered in the security policy
     // It is used actively by the HEAD function.
     protected static final String TO_BE_FILTERED_FLAG = "NOT_COVERED";
+
+    // Number of encryptions/decryptions in each chunk of rows processed by the same thread
+    protected static final int CIPHERTEXTS_PER_CHUNK = 32;
     
     // Data extracted from the security policy
     protected Map<String, String> attributeTypes = new HashMap<>(); // qualifName->type
     protected Map<String, String> dataTypes = new HashMap<>(); // qualifName->data_type
     protected Map<String, String> typesProtection = new HashMap<>(); // type->protectionModule
     protected Map<String, String> typesDataIDs = new HashMap<>(); // type->idKey
+    protected Map<String, SlotPacking> typesPacking = new HashMap<>(); // type->slotPacking (only packed types)
+    protected Set<String> binaryTypes = new HashSet<>(); // types whose ciphertexts use the binary encoding
+    protected Map<String, Pattern> protectionRules = new LinkedHashMap<>(); // qualifName->compiled pattern
+    // Resolved protection of the attributes, per list of attribute names
+    protected KeyCache<List<String>, ProtectionPlan[]> protectionPlans = new KeyCache<>(256, 0);
     protected KeyStore keyStore = KeyStore.getInstance();
+    protected HomomorphicMetrics metrics = HomomorphicMetrics.getInstance();
 
     // Map of the fully-qualified Attribute Names
     protected List<String> qualifiedAttributes = new ArrayList<>();
@@ -59,6 +76,8 @@ public class HomomorphicModule implements DataOperation{
         this.cloudsNumber = 1;
 
         // First, get the types of each attribute and build the map
+        // The order of the attributes is kept to assign the slots of the packed types
+        List<String> policyAttributes = new ArrayList<>();
         NodeList nodes = policy.getElementsByTagName("attribute");
         for (int i = 0; i < nodes.getLength(); i++) {
             // Get the node and the list of its attributes
@@ -71,6 +90,7 @@ public class HomomorphicModule implements DataOperation{
             // Add the information to the map
             this.attributeTypes.put(attributeName, attributeType);
             this.dataTypes.put(attributeName, dataType);
+            policyAttributes.add(attributeName);
         }
 
         /*
@@ -102,8 +122,35 @@ public class HomomorphicModule implements DataOperation{
             if (typeProtection.equals("homomorphic")) {
                 String dataID = attributes.getNamedItem("id_key").getNodeValue();
                 this.typesDataIDs.put(attributeType, dataID);
+                // The values of the types declaring a slot width are packed in a single ciphertext
+                if (attributes.getNamedItem("slot_bits") != null) {
+                    int slotBits = Integer.parseInt(attributes.getNamedItem("slot_bits").getNodeValue());
+                    int headroomBits = attributes.getNamedItem("slot_headroom") != null
+                            ? Integer.parseInt(attributes.getNamedItem("slot_headroom").getNodeValue()) : 16;
+                    this.typesPacking.put(attributeType, new SlotPacking(attributeType, slotBits, headroomBits));
+                }
+                // The ciphertexts of the types declaring the binary encoding are sent in CiphertextColumns
+                if (attributes.getNamedItem("encoding") != null
+                        && attributes.getNamedItem("encoding").getNodeValue().equals("binary")) {
+                    this.binaryTypes.add(attributeType);
+                }
             }
         }
+        // Assign the slots of the packed types, following the order of the policy
+        policyAttributes.forEach(attributeName -> {
+            SlotPacking packing = this.typesPacking.get(this.attributeTypes.get(attributeName));
+            if (packing != null) {
+                // Each slot holds a single attribute: a wildcard would give the same slot to all its matches
+                if (attributeName.contains("*")) {
+                    throw new IllegalArgumentException("The attribute '" + attributeName + "' of the packed type '"
+                            + packing.getType() + "' must not contain wildcards");
+                }
+                packing.addAttribute(attributeName);
+            }
+        });
+        // Compile the protection rules once
+        this.attributeTypes.keySet().forEach(protectionRule -> this.protectionRules.put(protectionRule,
+                Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule))));
         // FIXME - Should the policy specify in which cloud to store the encrypted data?
         // If so, this information should be available in the "attribute_type" tag
         // so the "mapping" showing where to store each attribute should be built here.
@@ -137,6 +184,10 @@ public class HomomorphicModule implements DataOperation{
 
     @Override
     public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+        return this.measure("get", attributeNames, () -> this.protectGet(attributeNames, criteria));
+    }
+
+    private List<DataOperationCommand> protectGet(String[] attributeNames, Criteria[] criteria) {
         // IMPORTANT REMARK:
         // Since the encryption is not homomorphic, all the data must be retrieved
         // The selection of the rows will be done in the outboud GET, after decrypting the data
@@ -150,22 +201,22 @@ public class HomomorphicModule implements DataOperation{
         Stream.of(attributeNames)
                 .forEach(attributeName -> protectedAttributes.add(attributesMapping.get(attributeName)));
         
-        // Second, determine is there is an HomomrphicCriteria
-        // This procedure will consider THE LAST HomomorphicCriteria found
-        HomomorphicCriteria homoCrit = null;
+        // Second, determine is there are HomomrphicCriteria
+        // All of them are computed by the same command
+        List<HomomorphicCriteria> homoCrits = new ArrayList<>();
         List<Criteria> listCriteria = new ArrayList<>();
         
         if(criteria != null){
             // Find the HomomorphicCriteria
             for(Criteria crit : criteria){
                 if(crit instanceof HomomorphicCriteria){
-                    // TODO 
-                    homoCrit = (HomomorphicCriteria) crit;
+                    homoCrits.add((HomomorphicCriteria) crit);
                     continue;
                 }
                 listCriteria.add(crit);
             }
-            listCriteria.forEach(criterion -> {
+            // The composed criteria are protected one by one
+            CompositeCriteria.flatten(listCriteria).forEach(criterion -> {
                 // Determine if the column is encrypted of not
                 String protectedAttribute = attributesMapping.get(criterion.getAttributeName());
                 if (!criterion.getAttributeName().equals(protectedAttribute)) {
@@ -177,13 +228,7 @@ public class HomomorphicModule implements DataOperation{
                     String protectedThreshold = "";
                     try {
                         // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
-                        String matchedProtection = null;
-                        for(String protectionRule : this.attributeTypes.keySet()){
-                            Pattern p = Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule));
-                            if(p.matcher(criterion.getAttributeName()).matches()){
-                                matchedProtection = protectionRule;
-                            }
-                        }
+                        String matchedProtection = this.matchProtectionRule(criterion.getAttributeName());
 
                         // If none matches, ignore this attribute => it is not convered by the Policy
                         if(matchedProtection == null)
@@ -197,9 +242,10 @@ public class HomomorphicModule implements DataOperation{
                         String protection = this.typesProtection
                                 .get(this.attributeTypes.get(matchedProtection));
                         // Encrypt only if the protection type is "encryption" or "simple"
-                        if (protection.equals("homomorphic")) {
-                            // Get the KeyPair
-                            KeyPair key = this.keyStore.retrieveKey(dataID);
+                        // (and if there is a value to compare, which is not the case of "is null")
+                        if (protection.equals("homomorphic") && criterion.getValue() != null) {
+                            // Get the pool of precomputed randomizers of the Public Key
+                            RandomizerPool pool = this.keyStore.retrieveRandomizerPool(dataID);
 
                             if (this.dataTypes.get(matchedProtection).equals("geometric_object")) {
                                 String value = criterion.getValue();
@@ -264,7 +310,7 @@ public class HomomorphicModule implements DataOperation{
                                 BigInteger bigIntValue = BigInteger.valueOf(contentValue);
 
                                 // Encrypt the value and obtain the bytes representation
-                                EncryptedInteger encrypted = Paillier.encrypt(key.getPublic(), bigIntValue);
+                                EncryptedInteger encrypted = pool.encrypt(bigIntValue);
                                 BigInteger encValue = encrypted.getValue();
 
                                 // Encode the bytes using Base64
@@ -288,26 +334,71 @@ public class HomomorphicModule implements DataOperation{
         
         // Third, create the Command object
         DataOperationCommand command = null;
-        if(homoCrit == null){
+        if(homoCrits.isEmpty()){
             command = new HomomorphicCommand(attributeNames,
                     protectedAttributes.toArray(new String[attributeNames.length]), null, attributesMapping, criteria);
         } else {
             try{
-                String dataID;
-                // Determine the Public Key of the attribute in the homomorphic operation
-                // FIXME - This is not the attribute name but the TOKEN it matches
-                dataID = this.typesDataIDs.get(this.attributeTypes.get(homoCrit.getAttributeName()));
-                KeyStore ks = KeyStore.getInstance();
-                PublicKey pk = ks.retrieveKey(dataID).getPublic();
-                ks.deleteInstance();
-                // An encrypted zero migh be useful to start computing the sum
-                EncryptedInteger encryptedZero = Paillier.encrypt(pk, BigInteger.ZERO);
-                // Find the protected name of the involved column
-                // FIXME - This is not the attribute name but the TOKEN it matches.
-                String protAttribHomoName = attributesMapping.get(homoCrit.getAttributeName());
+                String[] operations = new String[homoCrits.size()];
+                String[] protAttribHomoNames = new String[homoCrits.size()];
+                // First, validate the operations (before retrieving any key)
+                for (int k = 0; k < homoCrits.size(); k++) {
+                    HomomorphicCriteria homoCrit = homoCrits.get(k);
+                    // Find the protected name of the involved column
+                    // FIXME - This is not the attribute name but the TOKEN it matches.
+                    protAttribHomoNames[k] = attributesMapping.get(homoCrit.getAttributeName());
+                    // The result of each operation is given in the column of its attribute, which must be requested
+                    if (protAttribHomoNames[k] == null || !protectedAttributes.contains(protAttribHomoNames[k])) {
+                        throw new UnsupportedOperationException("The attribute of a homomorphic operation must be "
+                                + "requested: " + homoCrit.getAttributeName());
+                    }
+                    // Each operation must be on its own column (its result is given in the column)
+                    if (Arrays.asList(protAttribHomoNames).subList(0, k).contains(protAttribHomoNames[k])) {
+                        throw new UnsupportedOperationException("Only one homomorphic operation can be computed on "
+                                + "the attribute: " + homoCrit.getAttributeName());
+                    }
+                    // All the operations must have the same GROUP BY
+                    if (!Arrays.equals(homoCrit.getGroupBy(), homoCrits.get(0).getGroupBy())) {
+                        throw new UnsupportedOperationException("The homomorphic operations must be grouped by "
+                                + "the same attributes");
+                    }
+                    operations[k] = homoCrit.getOperator();
+                }
+                // The cloud can only group the rows by plaintext attributes (which must be requested)
+                String[] groupBy = new String[homoCrits.get(0).getGroupBy().length];
+                for (int g = 0; g < groupBy.length; g++) {
+                    groupBy[g] = attributesMapping.get(homoCrits.get(0).getGroupBy()[g]);
+                    if (!homoCrits.get(0).getGroupBy()[g].equals(groupBy[g])) {
+                        throw new UnsupportedOperationException("The rows can only be grouped by requested "
+                                + "plaintext attributes: " + homoCrits.get(0).getGroupBy()[g]);
+                    }
+                }
+
+                // Second, determine the Public Key of the attribute of each operation
+                PublicKey[] pks = new PublicKey[homoCrits.size()];
+                EncryptedInteger[] encryptedZeros = new EncryptedInteger[homoCrits.size()];
+                // The key of each dataID is retrieved only once (from the key store of the module, so no reference
+                // to the KeyStore singleton is left behind when the request is rejected)
+                Map<String, RandomizerPool> pools = new HashMap<>();
+                for (int k = 0; k < homoCrits.size(); k++) {
+                    if (operations[k].equals("count")) {
+                        // A count does not involve any ciphertext
+                        continue;
+                    }
+                    // FIXME - This is not the attribute name but the TOKEN it matches
+                    String dataID = this.typesDataIDs.get(this.attributeTypes.get(homoCrits.get(k).getAttributeName()));
+                    RandomizerPool pool = pools.get(dataID);
+                    if (pool == null) {
+                        pool = this.keyStore.retrieveRandomizerPool(dataID);
+                        pools.put(dataID, pool);
+                    }
+                    pks[k] = pool.getPublicKey();
+                    // An encrypted zero migh be useful to start computing the sum
+                    encryptedZeros[k] = pool.encrypt(BigInteger.ZERO);
+                }
                 // Create the HomomorphicReoteOperationCommand object
                 command = new HomomorphicRemoteOperationCommand(attributeNames, protectedAttributes.toArray(new String[attributeNames.length]), null,
-                        attributesMapping, listCriteria.toArray(new Criteria[listCriteria.size()]), homoCrit.getOperator(), protAttribHomoName, pk, encryptedZero);
+                        attributesMapping, listCriteria.toArray(new Criteria[listCriteria.size()]), operations, protAttribHomoNames, pks, encryptedZeros, groupBy);
             } catch (IOException e){
                 e.printStackTrace();
                 System.exit(1);
@@ -320,158 +411,126 @@ public class HomomorphicModule implements DataOperation{
 
     @Override
     public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
-        // Iterate over all the given commands
-        List<DataOperationResult> commands = new ArrayList<>();
+        return this.get(promise, contents, null);
+    }
+
+    public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents,
+            List<CiphertextColumn[]> binaryContents) {
+        // The requests are tagged with the dataIDs of the first command
+        String[] attributeNames = promise.isEmpty() ? null
+                : this.decipherAttributeNames(promise.get(0).getProtectedAttributeNames());
+        return this.measure("get-results", attributeNames,
+                () -> this.decryptResults(promise, contents, binaryContents));
+    }
+
+    private List<DataOperationResult> decryptResults(List<DataOperationCommand> promise, List<String[][]> contents,
+            List<CiphertextColumn[]> binaryContents) {
+        // Same as get(promise, contents), where the ciphertexts of some attributes are given in binary columns
+        // (binaryContents can be null, or have null entries, if no column uses the binary encoding)
+        // The rows of all the commands are split in chunks of similar cost, which are decrypted concurrently.
+        // Each chunk writes its rows in their own slots of the results, so the order of the rows is kept.
+        String[][] plainAttributeNames = new String[promise.size()][];
+        String[][][] plainContents = new String[promise.size()][][];
+        Map<String, List<Runnable>> chunks = new LinkedHashMap<>();
         for (int n = 0; n < promise.size(); n++) {
             DataOperationCommand com = promise.get(n);
             String[][] content = contents.get(n);
 
-            String[] plainAttributeNames = new String[com.getProtectedAttributeNames().length];
-            List<String[]> plainContents = new ArrayList<>();
-            Map<String, String> mapAttributes = new HashMap<>();
-
-            Base64.Decoder decoder = Base64.getDecoder();
-
-            // Second, decipher the attribute names
-            // First, decipher the attribute Names and map them to the origial ones
-            for (int i = 0; i < com.getProtectedAttributeNames().length; i++) {
-
-                if (com.getProtectedAttributeNames()[i].endsWith("_homoenc")) {
-                    // "Decrypting" the attribute names is as simple as removing the "_homoenc" suffix
-                    int suffIndex = com.getProtectedAttributeNames()[i].indexOf("_homoenc");
-
-                    plainAttributeNames[i] = com.getProtectedAttributeNames()[i].substring(0, suffIndex);
-                } else {
-                    plainAttributeNames[i] = com.getProtectedAttributeNames()[i];
+            // Find the binary column of each attribute (if any)
+            CiphertextColumn[] columns = new CiphertextColumn[com.getProtectedAttributeNames().length];
+            if (binaryContents != null && binaryContents.get(n) != null) {
+                for (CiphertextColumn column : binaryContents.get(n)) {
+                    int j = Arrays.asList(com.getProtectedAttributeNames()).indexOf(column.getProtectedAttributeName());
+                    if (j >= 0) {
+                        columns[j] = column;
+                    }
                 }
-                mapAttributes.put(com.getProtectedAttributeNames()[i], plainAttributeNames[i]);
             }
 
-            // Second, decipher the contents
-            IntStream.range(0, content.length).parallel().forEach(i ->{
-            //for (int i = 0; i < content.length; i++) {
-                String[] row = new String[plainAttributeNames.length]; // Reconstructed row
-                IntStream.range(0, plainAttributeNames.length).parallel().forEach(j -> {
-                //for (int j = 0; j < plainAttributeNames.length; j++) {
-                    try{
-                        // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
-                        String matchedProtection = null;
-                        for (String protectionRule : this.attributeTypes.keySet()) {
-                            Pattern p = Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule));
-                            if (p.matcher(plainAttributeNames[j]).matches()) {
-                                matchedProtection = protectionRule;
-                            }
-                        }
-
-                        // If none matches, ignore this attribute => it is not convered by the Policy
-                        if(matchedProtection == null)
-                            return;
-
-                        // We assume the attribute names are in the same order of the content
-                        String plainValue;
-                        // Get the proteciton type of this attribute
-                        String protection = this.typesProtection.get(this.attributeTypes.get(matchedProtection));
-
-                        // Decrypt only if the protection type is "homomorphic"
-                        if (protection.equals("homomorphic")) {
-                            // Get the dataID
-                            String dataID = this.typesDataIDs.get(this.attributeTypes.get(matchedProtection));
+            // First, decipher the attribute Names and map them to the origial ones
+            plainAttributeNames[n] = this.decipherAttributeNames(com.getProtectedAttributeNames());
+
+            // Resolve the protection of each attribute (including which attributes are packed in the same ciphertext)
+            ProtectionPlan[] plans = this.resolvePlans(plainAttributeNames[n]);
+
+            // Second, split the contents in chunks
+            String[][] rows = new String[content.length][];
+            plainContents[n] = rows;
+            chunks.computeIfAbsent(this.tenantOf(plans), tenant -> new ArrayList<>())
+                    .addAll(this.chunkRows(this.countCiphertexts(plans), content.length,
+                            i -> rows[i] = this.decryptRow(com, plans, content[i], columns, i)));
+            this.recordWork("get-results", plans, content.length, Metric.DECRYPTIONS);
+        }
 
-                            // Get the KeyPair
-                            KeyPair key = this.keyStore.retrieveKey(dataID);
+        // Third, decipher the contents of all the commands
+        this.keyStore.getCryptoExecutor().runAll(chunks);
 
-                            if (this.dataTypes.get(matchedProtection).equals("geometric_object")) {
-                                String value = content[i][j];
-                                GeometryBuilder builder = new GeometryBuilder();
-                                Object geom = builder.decode(value);
-                                if (geom != null) {
-                                    if (geom instanceof Point) {
-                                        // NOTE - To correctly encrypt, just cipher coordinates
-                                        Point point = (Point) geom;
-                                        double maxX, maxY;
-                                        int srid = point.getSrid();
-                                        if (srid == 0) {
-                                            srid = Arrays.stream(com.getCriteria())
-                                                    .filter(c -> c.getOperator().equals("area")).findFirst()
-                                                    .map(Criteria::getValue).map(v -> v.split(",")).map(tk -> tk[4])
-                                                    .map(String::trim).map(Integer::parseInt).orElse(0);
-                                        }
-                                        if (srid != 0) {
-                                            ProjectedCRS crs = ProjectedCRS.resolve(srid);
-                                            maxX = crs.getAxis("x").getMax();
-                                            maxY = crs.getAxis("y").getMax();
-                                        } else {
-                                            maxX = Double.MAX_VALUE;
-                                            maxY = Double.MAX_VALUE;
-                                        }
-                                        // Homomorphically encrypt a real value is not mathematically possible.
-                                        /*
-                                         * point.x = encryptDouble(cipher, point.x, maxX);
-                                         * point.y = encryptDouble(cipher, point.y, maxY);
-                                         */
-                                    } else if (geom instanceof PGbox2d) {
-                                        PGbox2d box = (PGbox2d) geom;
-                                        int srid = box.getLLB().getSrid();
-                                        if (srid == 0) {
-                                            srid = Arrays.stream(com.getCriteria())
-                                                    .filter(c -> c.getOperator().equals("area")).findFirst()
-                                                    .map(Criteria::getValue).map(v -> v.split(",")).map(tk -> tk[4])
-                                                    .map(String::trim).map(Integer::parseInt).orElse(0);
-                                        }
-                                        if (srid != 0) {
-                                            ProjectedCRS crs = ProjectedCRS.resolve(srid);
-                                            box.getLLB().x = crs.getAxis("x").getMin();
-                                            box.getLLB().y = crs.getAxis("y").getMin();
-                                            box.getURT().x = crs.getAxis("x").getMax();
-                                            box.getURT().y = crs.getAxis("y").getMax();
-                                        } else {
-                                            box.getLLB().x = -Double.MAX_VALUE;
-                                            box.getLLB().y = -Double.MAX_VALUE;
-                                            box.getURT().x = Double.MAX_VALUE;
-                                            box.getURT().y = Double.MAX_VALUE;
-                                        }
-                                    }
-                                    value = builder.encode(geom);
-                                }
-                                plainValue = value;
-                            } else {
-                                // Create the BigInteger and EncryptedInteger objects containing the data
-                                // Since this is a protected attribute, it is B64-encoded
-                                BigInteger encContent = new BigInteger(decoder.decode(content[i][j]));
-                                EncryptedInteger data = new EncryptedInteger(encContent, key.getPublic());
-
-                                // Decrypt the value and obtain the bytes representation
-                                BigInteger decrypted = Paillier.decrypt(key.getSecret(), data);
-
-                                // Recover the decrypted data. It is assumed the value fits in a long
-                                plainValue = decrypted.longValue() + "";
-                                if ("clarus_null".equals(plainValue)) {
-                                    plainValue = null;
-                                }
-                            }
-                        } else {
-                            // Simply copy the content
-                            plainValue = content[i][j];
-                        }
-                    row[j] = plainValue;
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        System.exit(1);
-                    }
-                });
-                plainContents.add(row);
-            });
+        // Finish the homomorphic operations (their encrypted sums were decrypted with the rows)
+        for (int n = 0; n < promise.size(); n++) {
+            if (promise.get(n) instanceof HomomorphicRemoteOperationCommand) {
+                this.finishAggregates((HomomorphicRemoteOperationCommand) promise.get(n),
+                        this.resolvePlans(plainAttributeNames[n]), contents.get(n), plainContents[n]);
+            }
+        }
 
-            // Encapsulate the output
-            DataOperationResult command = new HomomorphicResult(plainAttributeNames,
-                    plainContents.toArray(new String[plainContents.size()][plainAttributeNames.length]));
-            commands.add(command);
+        // Encapsulate the output
+        List<DataOperationResult> commands = new ArrayList<>();
+        for (int n = 0; n < promise.size(); n++) {
+            commands.add(new HomomorphicResult(plainAttributeNames[n], plainContents[n]));
         }
         return commands;
     }
 
+    public StreamingResult get(DataOperationCommand promise, Iterator<String[]> contents) {
+        // Streaming variant of get(promise, contents), for a single command.
+        // The rows given by the cloud are read and decrypted in batches, when the caller requests them,
+        // so the first rows are available without waiting for (or decrypting) the whole response.
+        String[] plainAttributeNames = this.decipherAttributeNames(promise.getProtectedAttributeNames());
+
+        // Resolve the protection of each attribute (including which attributes are packed in the same ciphertext)
+        ProtectionPlan[] plans = this.resolvePlans(plainAttributeNames);
+
+        // There are no binary columns in a stream: the ciphertexts of the attributes using the binary encoding must
+        // be given B64-encoded in the rows (the null cells are only expected in the results of the aggregates)
+        CiphertextColumn[] columns = new CiphertextColumn[plainAttributeNames.length];
+        boolean nullsExpected = promise instanceof HomomorphicRemoteOperationCommand;
+        // The work is recorded as the rows are decrypted
+        String tenant = this.tenantOf(plans);
+        int ciphertexts = this.countCiphertexts(plans);
+        // Each batch gives a chunk of rows to each crypto thread
+        int batchRows = Math.max(1, CIPHERTEXTS_PER_CHUNK / Math.max(1, ciphertexts))
+                * this.keyStore.getCryptoExecutor().getThreads();
+        return new StreamingResult(plainAttributeNames, contents, batchRows, batch -> {
+            for (String[] row : batch) {
+                for (int j = 0; j < plans.length && !nullsExpected; j++) {
+                    if (plans[j].isBinary() && plans[j].isNumeric() && row[j] == null) {
+                        throw new UnsupportedOperationException("The streaming get requires the ciphertexts of "
+                                + plainAttributeNames[j] + " B64-encoded in the rows (use get(promise, contents, "
+                                + "binaryContents) for the binary columns)");
+                    }
+                }
+            }
+            this.metrics.add("get-stream", tenant, Metric.ROWS, batch.length);
+            this.metrics.add("get-stream", tenant, Metric.CELLS, (long) batch.length * plans.length);
+            this.metrics.add("get-stream", tenant, Metric.DECRYPTIONS, (long) batch.length * ciphertexts);
+            // Decrypt the rows of the batch concurrently, like the other results (each row keeps its position)
+            String[][] decrypted = new String[batch.length][];
+            this.runInChunks(plans, ciphertexts, batch.length,
+                    i -> decrypted[i] = this.decryptRow(promise, plans, batch[i], columns, i));
+            if (promise instanceof HomomorphicRemoteOperationCommand) {
+                // Each row is the result of a group: finish its aggregates (count, average)
+                this.finishAggregates((HomomorphicRemoteOperationCommand) promise, plans, batch, decrypted);
+            }
+            return decrypted;
+        });
+    }
+
     @Override
     public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+        return this.measure("post", attributeNames, () -> this.protectRows(attributeNames, contents));
+    }
+
+    private List<DataOperationCommand> protectRows(String[] attributeNames, String[][] contents) {
         String[][] encContents = new String[contents.length][attributeNames.length];
 
         Base64.Encoder encoder = Base64.getEncoder();
@@ -481,37 +540,42 @@ public class HomomorphicModule implements DataOperation{
         // (i.e. not marking them since this mapping WILL NOT be filtered later)
         Map<String, String> attributesMapping = this.buildAttributesMapping(attributeNames, notCoveredAttrib -> notCoveredAttrib, unprotectedAttrib -> unprotectedAttrib);
 
-            // Second, obfuscate the contents
-            IntStream.range(0, contents.length).parallel().forEach(i -> {
+        // Resolve the protection of each attribute (including which attributes are packed in the same ciphertext)
+        ProtectionPlan[] plans = this.resolvePlans(attributeNames);
+
+        // Allocate the columns of the attributes using the binary encoding
+        CiphertextColumn[] columns = this.allocateCiphertextColumns(plans,
+                Stream.of(attributeNames).map(attributesMapping::get).toArray(String[]::new), contents.length);
+
+            // Second, obfuscate the contents (in chunks of rows, encrypted concurrently)
+            this.runInChunks(plans, this.countCiphertexts(plans), contents.length, i -> {
             //IntStream.range(0, contents.length).forEach(i -> {
+                // Encrypt the packed values of the row, once per packed type
+                Map<String, BigInteger> packedContents = this.encryptPackedRow(contents[i], plans);
                 //for (int j = 0; j < attributeNames.length; j++) {
-                IntStream.range(0, attributeNames.length).parallel().forEach(j -> {
-                //IntStream.range(0, attributeNames.length).forEach(j -> {
-                    try{
-                        // Get the prpteciton type of this attribute
-                        // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
-                        String matchedProtection = null;
-                        for(String protectionRule : this.attributeTypes.keySet()){
-                            Pattern p = Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule));
-                            if(p.matcher(attributeNames[j]).matches()){
-                                matchedProtection = protectionRule;
-                            }
+                IntStream.range(0, attributeNames.length).forEach(j -> {
+                    ProtectionPlan plan = plans[j];
+                    if (plan.getPacking() != null) {
+                        // All the attributes of a packed type share the same ciphertext
+                        BigInteger encValue = packedContents.get(plan.getPacking().getType());
+                        if (columns[j] != null) {
+                            columns[j].set(i, encValue);
+                        } else {
+                            encContents[i][j] = encoder.encodeToString(encValue.toByteArray());
                         }
-
-                        // If none matches, ignore this attribute => it is not convered by the Policy
-                        if(matchedProtection == null)
+                        return;
+                    }
+                    try{
+                        // If no protection rule matches, ignore this attribute => it is not convered by the Policy
+                        if(!plan.isCovered())
                             return;
 
-                        String protection = typesProtection.get(this.attributeTypes.get(matchedProtection));
                         // Encrypt only if the protection type is "homomorphic"
-                        if (protection.equals("homomorphic")) {
-                            // Get the dataID
-                            String dataID = this.typesDataIDs.get(this.attributeTypes.get(matchedProtection));
+                        if (plan.isHomomorphic()) {
+                            // Get the pool of precomputed randomizers of the Public Key
+                            RandomizerPool pool = this.keyStore.retrieveRandomizerPool(plan.getDataID());
 
-                            // Get the KeyPair
-                            KeyPair key = this.keyStore.retrieveKey(dataID);
-
-                            if (this.dataTypes.get(matchedProtection).equals("geometric_object")) {
+                            if (plan.getDataType().equals("geometric_object")) {
                                 String value = contents[i][j];
                                 GeometryBuilder builder = new GeometryBuilder();
                                 Object geom = builder.decode(value);
@@ -547,11 +611,16 @@ public class HomomorphicModule implements DataOperation{
                                 BigInteger bigIntValue = BigInteger.valueOf(contentValue);
 
                                 // Encrypt the value and obtain the bytes representation
-                                EncryptedInteger encrypted = Paillier.encrypt(key.getPublic(), bigIntValue);
+                                EncryptedInteger encrypted = pool.encrypt(bigIntValue);
                                 BigInteger encValue = encrypted.getValue();
 
-                                // Encode the bytes using Base64
-                                encContents[i][j] = encoder.encodeToString(encValue.toByteArray());
+                                if (columns[j] != null) {
+                                    // Store the fixed-width bytes in the column
+                                    columns[j].set(i, encValue);
+                                } else {
+                                    // Encode the bytes using Base64
+                                    encContents[i][j] = encoder.encodeToString(encValue.toByteArray());
+                                }
                             }
                         } else {
                             // Simply copy the content
@@ -569,15 +638,159 @@ public class HomomorphicModule implements DataOperation{
         Stream.of(attributeNames)
                 .forEach(attributeName -> protectedAttributes.add(attributesMapping.get(attributeName)));
 
+        // Record the work done
+        this.recordWork("post", plans, encContents.length, Metric.ENCRYPTIONS);
+        this.metrics.add("post", this.tenantOf(plans), Metric.BYTES, this.countBytes(plans, encContents, columns));
+
         // Encapsulate the output
         DataOperationCommand command = new HomomorphicCommand(attributeNames,
                 protectedAttributes.toArray(new String[attributeNames.length]), encContents, attributesMapping,
-                null);
+                null, Stream.of(columns).filter(column -> column != null).toArray(CiphertextColumn[]::new));
         List<DataOperationCommand> commands = new ArrayList<>();
         commands.add(command);
         return commands;
     }
 
+    public List<DataOperationCommand> post(String[] attributeNames, long[][] numericColumns, String[][] otherColumns) {
+        return this.measure("post", attributeNames,
+                () -> this.protectColumns(attributeNames, numericColumns, otherColumns));
+    }
+
+    private List<DataOperationCommand> protectColumns(String[] attributeNames, long[][] numericColumns,
+            String[][] otherColumns) {
+        // Columnar variant of post(attributeNames, contents).
+        // The values of the attribute j are given in numericColumns[j] (for the homomorphic attributes, which are
+        // assumed to be integers) or in otherColumns[j] (for the other ones, which are copied as they are).
+        // The values are encrypted column by column, without parsing any String.
+        int rows = -1;
+        for (int j = 0; j < attributeNames.length; j++) {
+            int length = numericColumns != null && numericColumns[j] != null ? numericColumns[j].length
+                    : otherColumns != null && otherColumns[j] != null ? otherColumns[j].length : -1;
+            if (length >= 0 && rows >= 0 && length != rows) {
+                throw new IllegalArgumentException("The columns do not have the same number of rows");
+            }
+            rows = Math.max(rows, length);
+        }
+        final int rowsNumber = Math.max(rows, 0);
+        String[][] encContents = new String[rowsNumber][attributeNames.length];
+
+        Base64.Encoder encoder = Base64.getEncoder();
+
+        // Create the mapping between the given Attribute Names and the protected ones (as in post)
+        Map<String, String> attributesMapping = this.buildAttributesMapping(attributeNames, notCoveredAttrib -> notCoveredAttrib, unprotectedAttrib -> unprotectedAttrib);
+
+        // Resolve the protection of each attribute (including which attributes are packed in the same ciphertext)
+        ProtectionPlan[] plans = this.resolvePlans(attributeNames);
+
+        // Allocate the columns of the attributes using the binary encoding
+        CiphertextColumn[] columns = this.allocateCiphertextColumns(plans,
+                Stream.of(attributeNames).map(attributesMapping::get).toArray(String[]::new), rowsNumber);
+
+        // Get the numeric values of each homomorphic attribute
+        // (parsing the String values only if the column was not given as numbers)
+        long[][] numericValues = new long[attributeNames.length][];
+        for (int j = 0; j < attributeNames.length; j++) {
+            if (plans[j].isNumeric()) {
+                numericValues[j] = numericColumns != null && numericColumns[j] != null ? numericColumns[j]
+                        : Stream.of(otherColumns[j]).mapToLong(value -> (long) Double.parseDouble(value)).toArray();
+            }
+        }
+
+        // First, encrypt the packed types: all the values of a row are packed and encrypted once
+        Map<SlotPacking, BigInteger[]> packedCiphertexts = new HashMap<>();
+        for (int j = 0; j < attributeNames.length; j++) {
+            SlotPacking packing = plans[j].getPacking();
+            if (packing == null || packedCiphertexts.containsKey(packing)) {
+                continue;
+            }
+            BigInteger[] ciphertexts = new BigInteger[rowsNumber];
+            try {
+                RandomizerPool pool = this.keyStore.retrieveRandomizerPool(this.typesDataIDs.get(packing.getType()));
+                packing.checkCapacity(pool.getPublicKey().getN());
+                this.runInChunks(plans, 1, rowsNumber, i -> {
+                    BigInteger packed = BigInteger.ZERO;
+                    for (int k = 0; k < attributeNames.length; k++) {
+                        if (plans[k].getPacking() == packing) {
+                            packed = packing.pack(packed, plans[k].getSlot(), numericValues[k][i]);
+                        }
+                    }
+                    ciphertexts[i] = pool.encrypt(packed).getValue();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            packedCiphertexts.put(packing, ciphertexts);
+        }
+
+        // Second, encrypt (or copy) each column
+        for (int j = 0; j < attributeNames.length; j++) {
+            final int column = j;
+            // If no protection rule matches, ignore this attribute => it is not convered by the Policy
+            if (!plans[j].isCovered()) {
+                continue;
+            }
+            if (numericValues[j] == null) {
+                // Simply copy the content
+                IntStream.range(0, rowsNumber).forEach(i -> encContents[i][column] = otherColumns != null
+                        && otherColumns[column] != null ? otherColumns[column][i]
+                                : Long.toString(numericColumns[column][i]));
+                continue;
+            }
+            try {
+                // The attributes of a packed type share the ciphertexts of the type
+                // The other ones are encrypted with the randomizers of the Public Key
+                BigInteger[] packed = plans[j].getPacking() != null ? packedCiphertexts.get(plans[j].getPacking())
+                        : null;
+                RandomizerPool pool = packed == null ? this.keyStore.retrieveRandomizerPool(plans[j].getDataID())
+                        : null;
+                this.runInChunks(plans, packed != null ? 0 : 1, rowsNumber, i -> {
+                    BigInteger encValue = packed != null ? packed[i]
+                            : pool.encrypt(BigInteger.valueOf(numericValues[column][i])).getValue();
+                    if (columns[column] != null) {
+                        // Store the fixed-width bytes in the column
+                        columns[column].set(i, encValue);
+                    } else {
+                        // Encode the bytes using Base64
+                        encContents[i][column] = encoder.encodeToString(encValue.toByteArray());
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }
+
+        // Generate the ORDERED list of the protected attributeNames
+        List<String> protectedAttributes = new ArrayList<>();
+        Stream.of(attributeNames)
+                .forEach(attributeName -> protectedAttributes.add(attributesMapping.get(attributeName)));
+
+        // Record the work done
+        this.recordWork("post", plans, encContents.length, Metric.ENCRYPTIONS);
+        this.metrics.add("post", this.tenantOf(plans), Metric.BYTES, this.countBytes(plans, encContents, columns));
+
+        // Encapsulate the output
+        DataOperationCommand command = new HomomorphicCommand(attributeNames,
+                protectedAttributes.toArray(new String[attributeNames.length]), encContents, attributesMapping,
+                null, Stream.of(columns).filter(column -> column != null).toArray(CiphertextColumn[]::new));
+        List<DataOperationCommand> commands = new ArrayList<>();
+        commands.add(command);
+        return commands;
+    }
+
+    public StreamingPost post(String[] attributeNames, Iterator<String[]> rows, int batchSize, int maxPendingBatches) {
+        // Streaming variant of post(attributeNames, contents).
+        // The rows are encrypted in the background, batchSize rows at a time, and the returned iterator gives
+        // a command per batch as soon as it is ready. At most maxPendingBatches batches wait to be consumed.
+        return new StreamingPost(this, attributeNames, rows, batchSize, maxPendingBatches);
+    }
+
+    public StreamingPost post(String[] attributeNames, Spliterator<String[]> rows, int batchSize,
+            int maxPendingBatches) {
+        return this.post(attributeNames, Spliterators.iterator(rows), batchSize, maxPendingBatches);
+    }
+
     @Override
     public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
         // Put operation is not supported in this module
@@ -586,6 +799,10 @@ public class HomomorphicModule implements DataOperation{
 
     @Override
     public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+        return this.measure("delete", attributeNames, () -> this.protectDelete(attributeNames, criteria));
+    }
+
+    private List<DataOperationCommand> protectDelete(String[] attributeNames, Criteria[] criteria) {
         Map<String, String> attributesMapping = this.buildAttributesMapping(attributeNames,
                 notCoveredAttribute -> notCoveredAttribute, unprotectedAttrib -> unprotectedAttrib);
 
@@ -597,7 +814,7 @@ public class HomomorphicModule implements DataOperation{
         // Second, process the Criteria to transform the requested
         // AttributeNames to the protected ones
         if (criteria != null) {
-            Stream.of(criteria).parallel().forEach(criterion -> {
+            CompositeCriteria.flatten(Arrays.asList(criteria)).parallelStream().forEach(criterion -> {
                 // Determine if the column is encrypted of not
                 String protectedAttribute = attributesMapping.get(criterion.getAttributeName());
                 if (!criterion.getAttributeName().equals(protectedAttribute)) {
@@ -609,13 +826,7 @@ public class HomomorphicModule implements DataOperation{
                     String protectedThreshold = "";
                     try {
                         // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
-                        String matchedProtection = null;
-                        for(String protectionRule : this.attributeTypes.keySet()){
-                            Pattern p = Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule));
-                            if(p.matcher(criterion.getAttributeName()).matches()){
-                                matchedProtection = protectionRule;
-                            }
-                        }
+                        String matchedProtection = this.matchProtectionRule(criterion.getAttributeName());
 
                         // If none matches, ignore this attribute => it is not convered by the Policy
                         if(matchedProtection == null)
@@ -628,12 +839,12 @@ public class HomomorphicModule implements DataOperation{
                         String protection = this.typesProtection
                                 .get(this.attributeTypes.get(matchedProtection));
                         // Encrypt only if the protection type is "encryption"
-                        // or "simple"
-                        if (protection.equals("homomorphic")) {
+                        // or "simple" (and if there is a value to compare)
+                        if (protection.equals("homomorphic") && criterion.getValue() != null) {
                             byte[] bytesAttribEnc;
 
-                            // Get the KeyPair
-                            KeyPair key = this.keyStore.retrieveKey(dataID);
+                            // Get the pool of precomputed randomizers of the Public Key
+                            RandomizerPool pool = this.keyStore.retrieveRandomizerPool(dataID);
 
                             if (this.dataTypes.get(matchedProtection).equals("geometric_object")) {
                                 String value = criterion.getValue();
@@ -693,17 +904,14 @@ public class HomomorphicModule implements DataOperation{
                                 // Create the BigInteger object
                                 // In this part we will assume the homomorphic attributes ARE integers
                                 // This can be assumed since homomophic operations are guaranteed only on Interger
-                                // Parse the value.
-                                String value = criterion.getValue() != null ? criterion.getValue() : "clarus_null";
-                                // WARNING!!! - if criterion value == null, the next line will fail with a NumberFormatException!!!
-                                // TODO - Fix the criteria with no values.
-                                long contentValue = (long) Double.parseDouble(value);
+                                // Parse the value (the criteria with no value, like "is null", are not encrypted)
+                                long contentValue = (long) Double.parseDouble(criterion.getValue());
                                 BigInteger bigIntValue = BigInteger.valueOf(contentValue);
 
                                 // NOTE - To correctly encrypt, First cipher, THEN
                                 // Base64 encode
                                 // Encrypt the value and obtain the bytes representation
-                                EncryptedInteger encrypted = Paillier.encrypt(key.getPublic(), bigIntValue);
+                                EncryptedInteger encrypted = pool.encrypt(bigIntValue);
                                 BigInteger encValue = encrypted.getValue();
 
                                 protectedThreshold = Base64.getEncoder().encodeToString(encValue.toByteArray());
@@ -734,6 +942,10 @@ public class HomomorphicModule implements DataOperation{
 
     @Override
     public List<Map<String, String>> head(String[] attributeNames) {
+        return this.measure("head", null, () -> this.mapAttributes(attributeNames));
+    }
+
+    private List<Map<String, String>> mapAttributes(String[] attributeNames) {
         // First, resolve the wildcards according to the policy definitions
         String[] resolvedAttributes = AttributeNamesUtilities.resolveOperationAttributeNames(attributeNames, new ArrayList<>(this.attributeTypes.keySet()));
         // Remove duplicates here, since the resolved attributes will be the keys of the mapping
@@ -855,6 +1067,343 @@ public class HomomorphicModule implements DataOperation{
                 | ((long) value[6] & 0xff) << 8 | (long) value[7] & 0xff;
     }
     
+    private String[] decipherAttributeNames(String[] protectedAttributeNames) {
+        String[] plainAttributeNames = new String[protectedAttributeNames.length];
+        for (int i = 0; i < protectedAttributeNames.length; i++) {
+            if (protectedAttributeNames[i].endsWith("_homoenc")) {
+                // "Decrypting" the attribute names is as simple as removing the "_homoenc" suffix
+                int suffIndex = protectedAttributeNames[i].indexOf("_homoenc");
+
+                plainAttributeNames[i] = protectedAttributeNames[i].substring(0, suffIndex);
+            } else {
+                plainAttributeNames[i] = protectedAttributeNames[i];
+            }
+        }
+        return plainAttributeNames;
+    }
+
+    private String[] decryptRow(DataOperationCommand com, ProtectionPlan[] plans, String[] cells,
+            CiphertextColumn[] columns, int i) {
+        // Decrypt the i-th row of the contents of the given command
+        // (the cells of the attributes using the binary encoding are read from their columns)
+        Base64.Decoder decoder = Base64.getDecoder();
+        String[] row = new String[plans.length]; // Reconstructed row
+        // Packed ciphertexts are decrypted only once per row
+        Map<BigInteger, BigInteger> packedPlains = new HashMap<>();
+        // The cells are decrypted sequentially: the rows are already decrypted concurrently
+        IntStream.range(0, plans.length).forEach(j -> {
+        //for (int j = 0; j < plans.length; j++) {
+            try{
+                ProtectionPlan plan = plans[j];
+                // If no protection rule matches, ignore this attribute => it is not convered by the Policy
+                if(!plan.isCovered())
+                    return;
+
+                // We assume the attribute names are in the same order of the content
+                String plainValue;
+
+                // Decrypt only if the protection type is "homomorphic"
+                if (plan.isHomomorphic()) {
+                    // Get the dataID
+                    String dataID = plan.getDataID();
+
+                    // Get the KeyPair
+                    KeyPair key = this.keyStore.retrieveKey(dataID);
+
+                    if (plan.getDataType().equals("geometric_object")) {
+                        String value = cells[j];
+                        GeometryBuilder builder = new GeometryBuilder();
+                        Object geom = builder.decode(value);
+                        if (geom != null) {
+                            if (geom instanceof Point) {
+                                // NOTE - To correctly encrypt, just cipher coordinates
+                                Point point = (Point) geom;
+                                double maxX, maxY;
+                                int srid = point.getSrid();
+                                if (srid == 0) {
+                                    srid = Arrays.stream(com.getCriteria())
+                                            .filter(c -> c.getOperator().equals("area")).findFirst()
+                                            .map(Criteria::getValue).map(v -> v.split(",")).map(tk -> tk[4])
+                                            .map(String::trim).map(Integer::parseInt).orElse(0);
+                                }
+                                if (srid != 0) {
+                                    ProjectedCRS crs = ProjectedCRS.resolve(srid);
+                                    maxX = crs.getAxis("x").getMax();
+                                    maxY = crs.getAxis("y").getMax();
+                                } else {
+                                    maxX = Double.MAX_VALUE;
+                                    maxY = Double.MAX_VALUE;
+                                }
+                                // Homomorphically encrypt a real value is not mathematically possible.
+                                /*
+                                 * point.x = encryptDouble(cipher, point.x, maxX);
+                                 * point.y = encryptDouble(cipher, point.y, maxY);
+                                 */
+                            } else if (geom instanceof PGbox2d) {
+                                PGbox2d box = (PGbox2d) geom;
+                                int srid = box.getLLB().getSrid();
+                                if (srid == 0) {
+                                    srid = Arrays.stream(com.getCriteria())
+                                            .filter(c -> c.getOperator().equals("area")).findFirst()
+                                            .map(Criteria::getValue).map(v -> v.split(",")).map(tk -> tk[4])
+                                            .map(String::trim).map(Integer::parseInt).orElse(0);
+                                }
+                                if (srid != 0) {
+                                    ProjectedCRS crs = ProjectedCRS.resolve(srid);
+                                    box.getLLB().x = crs.getAxis("x").getMin();
+                                    box.getLLB().y = crs.getAxis("y").getMin();
+                                    box.getURT().x = crs.getAxis("x").getMax();
+                                    box.getURT().y = crs.getAxis("y").getMax();
+                                } else {
+                                    box.getLLB().x = -Double.MAX_VALUE;
+                                    box.getLLB().y = -Double.MAX_VALUE;
+                                    box.getURT().x = Double.MAX_VALUE;
+                                    box.getURT().y = Double.MAX_VALUE;
+                                }
+                            }
+                            value = builder.encode(geom);
+                        }
+                        plainValue = value;
+                    } else if (columns[j] == null && cells[j] == null) {
+                        // The null cells (e.g. the other attributes of an aggregate of no rows) stay null
+                        plainValue = null;
+                    } else {
+                        // Create the BigInteger and EncryptedInteger objects containing the data
+                        // Since this is a protected attribute, it is B64-encoded (or in a binary column)
+                        BigInteger encContent = columns[j] != null ? columns[j].get(i)
+                                : new BigInteger(decoder.decode(cells[j]));
+                        // Use the CRT parameters when they are available (much faster)
+                        PaillierCrtKey crtKey = this.keyStore.retrieveCrtKey(dataID);
+                        Function<BigInteger, BigInteger> decryption = ciphertext -> {
+                            EncryptedInteger data = new EncryptedInteger(ciphertext, key.getPublic());
+
+                            // Decrypt the value and obtain the bytes representation
+                            return crtKey != null ? crtKey.decrypt(data)
+                                    : Paillier.decrypt(key.getSecret(), data);
+                        };
+
+                        if (plan.getPacking() != null) {
+                            // Decrypt the shared ciphertext (only once) and extract the slot of this attribute
+                            BigInteger decrypted = packedPlains.computeIfAbsent(encContent, decryption);
+                            plainValue = plan.getPacking().unpack(decrypted, plan.getSlot()) + "";
+                        } else {
+                            BigInteger decrypted = decryption.apply(encContent);
+
+                            // Recover the decrypted data. It is assumed the value fits in a long
+                            plainValue = decrypted.longValue() + "";
+                        }
+                        if ("clarus_null".equals(plainValue)) {
+                            plainValue = null;
+                        }
+                    }
+                } else {
+                    // Simply copy the content
+                    plainValue = cells[j];
+                }
+            row[j] = plainValue;
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        });
+        return row;
+    }
+
+    private void finishAggregates(HomomorphicRemoteOperationCommand com, ProtectionPlan[] plans, String[][] content,
+            String[][] rows) {
+        // The cloud gives the number of involved values of each operation in the cells following the attributes
+        for (int k = 0; k < com.getOperationCount(); k++) {
+            int j = Arrays.asList(com.getProtectedAttributeNames()).indexOf(com.getInvolvedColumn(k));
+            for (int i = 0; i < rows.length; i++) {
+                if (j < 0 || content[i].length <= com.getCountIndex(k)) {
+                    // No count was given (e.g. a sum computed by an older cloud)
+                    continue;
+                }
+                long count = Long.parseLong(content[i][com.getCountIndex(k)]);
+                SlotPacking packing = plans[j].getPacking();
+                if (packing != null && !com.getOperation(k).equals("count") && !packing.canSum(count)) {
+                    // The sum might have carried into the next slot: its value cannot be trusted
+                    throw new ArithmeticException("The sum of " + count + " values of " + com.getInvolvedColumn(k)
+                            + " exceeds the headroom of the slots of type '" + packing.getType() + "'");
+                }
+                switch (com.getOperation(k)) {
+                case "count":
+                    rows[i][j] = Long.toString(count);
+                    break;
+                case "avg":
+                    // The average of no values is null
+                    rows[i][j] = count > 0 ? new BigDecimal(rows[i][j])
+                            .divide(BigDecimal.valueOf(count), MathContext.DECIMAL64).stripTrailingZeros()
+                            .toPlainString() : null;
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+    }
+
+    private String matchProtectionRule(String attributeName) {
+        // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
+        String matchedProtection = null;
+        for (Map.Entry<String, Pattern> protectionRule : this.protectionRules.entrySet()) {
+            if (protectionRule.getValue().matcher(attributeName).matches()) {
+                matchedProtection = protectionRule.getKey();
+            }
+        }
+        return matchedProtection;
+    }
+
+    private ProtectionPlan[] resolvePlans(String[] attributeNames) {
+        // Resolve the protection of each given attribute (only once per list of attribute names)
+        List<String> signature = Arrays.asList(attributeNames);
+        ProtectionPlan[] plans = this.protectionPlans.get(signature);
+        if (plans == null) {
+            plans = new ProtectionPlan[attributeNames.length];
+            for (int j = 0; j < attributeNames.length; j++) {
+                plans[j] = this.resolvePlan(attributeNames[j]);
+            }
+            // Copy the names, since the caller could modify its array
+            this.protectionPlans.put(new ArrayList<>(signature), plans);
+        }
+        return plans;
+    }
+
+    private ProtectionPlan resolvePlan(String attributeName) {
+        String matchedProtection = this.matchProtectionRule(attributeName);
+        if (matchedProtection == null) {
+            // The attribute is not covered by the policy
+            return new ProtectionPlan(null, null, null, null, null, null, false);
+        }
+        String type = this.attributeTypes.get(matchedProtection);
+        return new ProtectionPlan(matchedProtection, type, this.typesProtection.get(type), this.typesDataIDs.get(type),
+                this.dataTypes.get(matchedProtection), this.typesPacking.get(type), this.binaryTypes.contains(type));
+    }
+
+    private int countCiphertexts(ProtectionPlan[] plans) {
+        // Number of encryptions/decryptions required by each row (a packed type only has one ciphertext)
+        Set<SlotPacking> packings = new HashSet<>();
+        int ciphertexts = 0;
+        for (ProtectionPlan plan : plans) {
+            if (plan.isNumeric() && (plan.getPacking() == null || packings.add(plan.getPacking()))) {
+                ciphertexts++;
+            }
+        }
+        return ciphertexts;
+    }
+
+    private String tenantOf(ProtectionPlan[] plans) {
+        // The crypto tasks are scheduled fairly between the sets of keys (dataIDs) used by the requests
+        return Stream.of(plans).filter(ProtectionPlan::isHomomorphic).map(ProtectionPlan::getDataID).distinct()
+                .sorted().collect(Collectors.joining(","));
+    }
+
+    private List<Runnable> chunkRows(int ciphertextsPerRow, int rows, IntConsumer rowTask) {
+        // Split the rows in chunks of about CIPHERTEXTS_PER_CHUNK encryptions/decryptions
+        List<Runnable> chunks = new ArrayList<>();
+        int rowsPerChunk = Math.max(1, CIPHERTEXTS_PER_CHUNK / Math.max(1, ciphertextsPerRow));
+        for (int from = 0; from < rows; from += rowsPerChunk) {
+            int start = from;
+            int end = Math.min(rows, from + rowsPerChunk);
+            chunks.add(() -> {
+                for (int i = start; i < end; i++) {
+                    rowTask.accept(i);
+                }
+            });
+        }
+        return chunks;
+    }
+
+    private void runInChunks(ProtectionPlan[] plans, int ciphertextsPerRow, int rows, IntConsumer rowTask) {
+        // Process the rows concurrently on the crypto executor
+        this.keyStore.getCryptoExecutor().runAll(this.tenantOf(plans),
+                this.chunkRows(ciphertextsPerRow, rows, rowTask));
+    }
+
+    private <T> T measure(String operation, String[] attributeNames, Supplier<T> body) {
+        // Count and time a request, tagged with the dataIDs of the given attributes
+        String tenant = attributeNames != null ? this.tenantOf(this.resolvePlans(attributeNames)) : "";
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = body.get();
+            failed = false;
+            return result;
+        } finally {
+            this.metrics.time(operation, tenant, System.nanoTime() - start, failed);
+        }
+    }
+
+    private void recordWork(String operation, ProtectionPlan[] plans, int rows, Metric crypto) {
+        // Count the rows, cells and encryptions (or decryptions) of a request, from the plans of its attributes
+        String tenant = this.tenantOf(plans);
+        this.metrics.add(operation, tenant, Metric.ROWS, rows);
+        this.metrics.add(operation, tenant, Metric.CELLS, (long) rows * plans.length);
+        this.metrics.add(operation, tenant, crypto, (long) rows * this.countCiphertexts(plans));
+    }
+
+    private long countBytes(ProtectionPlan[] plans, String[][] encContents, CiphertextColumn[] columns) {
+        // Size of the protected values produced (Base64 cells and binary columns)
+        long bytes = 0;
+        for (int j = 0; j < plans.length; j++) {
+            if (columns[j] != null) {
+                bytes += (long) columns[j].getRows() * columns[j].getWidth();
+            } else if (plans[j].isHomomorphic()) {
+                for (String[] row : encContents) {
+                    bytes += row[j] != null ? row[j].length() : 0;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private CiphertextColumn[] allocateCiphertextColumns(ProtectionPlan[] plans, String[] protectedAttributeNames,
+            int rows) {
+        // Allocate a column for each (numeric) homomorphic attribute whose type uses the binary encoding.
+        // The other attributes are left with a null column.
+        CiphertextColumn[] columns = new CiphertextColumn[plans.length];
+        for (int j = 0; j < plans.length; j++) {
+            if (plans[j].isBinary() && plans[j].isNumeric()) {
+                try {
+                    PublicKey pk = this.keyStore.retrieveRandomizerPool(plans[j].getDataID()).getPublicKey();
+                    columns[j] = new CiphertextColumn(protectedAttributeNames[j], rows, CiphertextColumn.widthFor(pk));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            }
+        }
+        return columns;
+    }
+
+    private Map<String, BigInteger> encryptPackedRow(String[] row, ProtectionPlan[] plans) {
+        // Pack the values of each packed type into a single plaintext
+        Map<String, BigInteger> packedPlains = new HashMap<>();
+        for (int j = 0; j < row.length; j++) {
+            SlotPacking packing = plans[j].getPacking();
+            if (packing != null) {
+                // In this part we will assume the homomorphic attributes ARE integers
+                long contentValue = (long) Double.parseDouble(row[j]);
+                BigInteger packed = packedPlains.getOrDefault(packing.getType(), BigInteger.ZERO);
+                packedPlains.put(packing.getType(), packing.pack(packed, plans[j].getSlot(), contentValue));
+            }
+        }
+
+        // Encrypt each packed plaintext
+        Map<String, BigInteger> packedContents = new HashMap<>();
+        packedPlains.forEach((type, packed) -> {
+            try {
+                RandomizerPool pool = this.keyStore.retrieveRandomizerPool(this.typesDataIDs.get(type));
+                this.typesPacking.get(type).checkCapacity(pool.getPublicKey().getN());
+                packedContents.put(type, pool.encrypt(packed).getValue());
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        });
+        return packedContents;
+    }
+
     private Map<String,String> filterMapingEntries(Map<String,String> mapping) {
         // This function will analyze the given mapping (built using buildAttributesMapping)
         // and remove the entries that are not comprised in the seciryt policy.
@@ -888,13 +1437,7 @@ public class HomomorphicModule implements DataOperation{
                             String attribEnc = "";
                             try {
                                 // Find which "protectionRule" (in the keyset of attributeTypes) matches the given attribute name
-                                String matchedProtection = null;
-                                for (String protectionRule : this.attributeTypes.keySet()) {
-                                    Pattern p = Pattern.compile(AttributeNamesUtilities.escapeRegex(protectionRule));
-                                    if (p.matcher(originalQualifAttribName).matches()) {
-                                        matchedProtection = protectionRule;
-                                    }
-                                }
+                                String matchedProtection = this.matchProtectionRule(originalQualifAttribName);
                                 
                                 // If none matches, ignore this attribute => it is not convered by the Policy
                                 // To filter these entries later, we will use a "special" string.
@@ -10,34 +10,94 @@ public class HomomorphicRemoteOperationCommand extends HomomorphicCommand {
     // operation on data encrypted with homomorphic schema
 
     // FIXME - Maybe define the operations in a ENUM depeding on the encryption schema?
-    protected String operation;
-    protected String involvedColumn; // It is assumed this is a protected Attribute name
-    protected PublicKey pk; // The homomorphic computation REQUIRES the public key.
-    protected EncryptedInteger encryptedZero; // This constant might be useful for the cloud to start computing
+    // The operations are "+" (encrypted sum), "count" (plaintext count) and "avg" (encrypted sum and plaintext
+    // count). A count involves no ciphertext: it has no public key nor encrypted zero, and its column is null.
+    // A command can carry several operations, each one on its own column (and maybe with its own key).
+    // The cloud computes them in a single scan of the selected rows, and returns a single row with the encrypted
+    // sum of each operation in its involved column, followed by the number of involved values of each operation
+    // in extra cells (see getCountIndex). The module decrypts the sums together, and finishes the averages.
+    // With a GROUP BY, the cloud returns a row per group instead, holding the values of the grouped attributes
+    // (which must not be encrypted), the results of the group and their counts (the other attributes are null).
+    protected String[] operations;
+    protected String[] involvedColumns; // It is assumed these are protected Attribute names
+    protected PublicKey[] pks; // The homomorphic computation REQUIRES the public key.
+    protected EncryptedInteger[] encryptedZeros; // This constant might be useful for the cloud to start computing
+    protected String[] groupBy; // Protected Attribute names of the grouped attributes (empty if no GROUP BY)
 
     public HomomorphicRemoteOperationCommand(String[] attributeNames, String[] protectedAttributeNames,
             String[][] protectedContents, Map<String, String> mapping, Criteria[] criteria, String operation,
             String involvedRow, PublicKey pk, EncryptedInteger encryptedZero) {
+        this(attributeNames, protectedAttributeNames, protectedContents, mapping, criteria, operation, involvedRow,
+                pk, encryptedZero, new String[0]);
+    }
+
+    public HomomorphicRemoteOperationCommand(String[] attributeNames, String[] protectedAttributeNames,
+            String[][] protectedContents, Map<String, String> mapping, Criteria[] criteria, String operation,
+            String involvedRow, PublicKey pk, EncryptedInteger encryptedZero, String[] groupBy) {
+        this(attributeNames, protectedAttributeNames, protectedContents, mapping, criteria, new String[] { operation },
+                new String[] { involvedRow }, new PublicKey[] { pk }, new EncryptedInteger[] { encryptedZero },
+                groupBy);
+    }
+
+    public HomomorphicRemoteOperationCommand(String[] attributeNames, String[] protectedAttributeNames,
+            String[][] protectedContents, Map<String, String> mapping, Criteria[] criteria, String[] operations,
+            String[] involvedColumns, PublicKey[] pks, EncryptedInteger[] encryptedZeros, String[] groupBy) {
         super(attributeNames, protectedAttributeNames, protectedContents, mapping, criteria);
-        this.operation = operation;
-        this.involvedColumn = involvedRow;
-        this.pk = pk;
-        this.encryptedZero = encryptedZero;
+        this.operations = operations;
+        this.involvedColumns = involvedColumns;
+        this.pks = pks;
+        this.encryptedZeros = encryptedZeros;
+        this.groupBy = groupBy;
     }
 
+    // The getters without index give the first operation
+
     public String getOperation() {
-        return this.operation;
+        return this.operations[0];
     }
 
     public String getInvolvedColumn() {
-        return this.involvedColumn;
+        return this.involvedColumns[0];
     }
 
     public PublicKey getPublicKey() {
-        return this.pk;
+        return this.pks[0];
     }
 
     public EncryptedInteger getEncryptedZero() {
-        return this.encryptedZero;
+        return this.encryptedZeros[0];
+    }
+
+    public int getCountIndex() {
+        return this.getCountIndex(0);
+    }
+
+    public int getOperationCount() {
+        return this.operations.length;
+    }
+
+    public String getOperation(int k) {
+        return this.operations[k];
+    }
+
+    public String getInvolvedColumn(int k) {
+        return this.involvedColumns[k];
+    }
+
+    public PublicKey getPublicKey(int k) {
+        return this.pks[k];
+    }
+
+    public EncryptedInteger getEncryptedZero(int k) {
+        return this.encryptedZeros[k];
+    }
+
+    public int getCountIndex(int k) {
+        // The numbers of involved values are given in the cells following the attributes
+        return this.protectedAttributeNames.length + k;
+    }
+
+    public String[] getGroupBy() {
+        return this.groupBy;
     }
 }
@@ -0,0 +1,107 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class KeyCache<K, V> {
+    // In-process cache for the key material retrieved from the key store.
+    // Lookups are lock-free (ConcurrentHashMap). The size is bounded: when a new entry
+    // exceeds the capacity, the least recently used entry is evicted.
+    // Entries expire "ttl" milliseconds after being inserted (a ttl <= 0 disables the expiration).
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public KeyCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The size of the key cache must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        long now = System.nanoTime();
+
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+        if (this.ttlNanos > 0 && now - entry.created >= this.ttlNanos) {
+            // The entry is too old. Remove it (only if it was not replaced meanwhile)
+            this.entries.remove(key, entry);
+            this.misses.increment();
+            return null;
+        }
+        // Track the access to decide which entry should be evicted first
+        entry.lastAccess = now;
+        this.hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        this.entries.put(key, new Entry<>(value, System.nanoTime()));
+        // Evict the least recently used entries if the capacity is exceeded.
+        // NOTE - Inserting is rare compared to reading, so scanning the entries here is cheap enough
+        while (this.entries.size() > this.maxSize) {
+            K eldest = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<K, Entry<V>> candidate : this.entries.entrySet()) {
+                if (!candidate.getKey().equals(key) && candidate.getValue().lastAccess < eldestAccess) {
+                    eldest = candidate.getKey();
+                    eldestAccess = candidate.getValue().lastAccess;
+                }
+            }
+            if (eldest == null) {
+                break;
+            }
+            if (this.entries.remove(eldest) != null) {
+                this.evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        this.entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long created;
+        private volatile long lastAccess;
+
+        private Entry(V value, long created) {
+            this.value = value;
+            this.created = created;
+            this.lastAccess = created;
+        }
+    }
+}
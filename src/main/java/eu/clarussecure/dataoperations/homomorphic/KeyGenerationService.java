@@ -0,0 +1,172 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.encryption.paillier.Paillier;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class KeyGenerationService {
+    // Background generation of Paillier keys.
+    // Generating a key (i.e. searching two large primes) can take seconds. This service keeps
+    // a small reserve of ready keys for each requested key length, so the first access to a new
+    // dataID only takes a key from the reserve. Background threads refill the reserve afterwards.
+
+    private final int reserveSize;
+    private final ExecutorService generators;
+    // The keys requested on demand are generated with all the searcher threads, the keys of the reserve with a few
+    // low priority threads (null to use the Paillier library)
+    private final ParallelKeyGenerator parallelGenerator;
+    private final ParallelKeyGenerator backgroundGenerator;
+    private final Map<Integer, BlockingQueue<PaillierCrtKey>> reserves = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> pendingGenerations = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final LongAdder generatedKeys = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+    private final AtomicLong maxGenerationNanos = new AtomicLong();
+    private final LongAdder reserveHits = new LongAdder();
+    private final LongAdder reserveMisses = new LongAdder();
+
+    public KeyGenerationService(int reserveSize, int threads, int parallelism, int backgroundParallelism) {
+        this.reserveSize = reserveSize;
+        this.parallelGenerator = parallelism > 1 ? new ParallelKeyGenerator(parallelism) : null;
+        this.backgroundGenerator = backgroundParallelism > 1
+                ? new ParallelKeyGenerator(backgroundParallelism, Thread.MIN_PRIORITY) : null;
+        this.generators = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "clarus-homomorphic-keygen");
+            thread.setDaemon(true);
+            // Generating keys in advance must not slow down the requests
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public void prepare(IntSupplier keyLength) {
+        // Start filling the reserve. The key length is resolved in the background,
+        // since it might require accessing the key store
+        try {
+            this.generators.execute(() -> {
+                try {
+                    this.refill(keyLength.getAsInt());
+                } catch (RuntimeException e) {
+                    Logger.getLogger(KeyGenerationService.class.getName()).log(Level.WARNING,
+                            "The reserve of keys could not be prepared", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The service is shutting down, the keys will be generated on demand
+        }
+    }
+
+    public PaillierCrtKey take(int keyLength) {
+        PaillierCrtKey key = this.reserve(keyLength).poll();
+        // Replace the taken key (or fill the reserve if it was empty)
+        this.refill(keyLength);
+        if (key != null) {
+            this.reserveHits.increment();
+            return key;
+        }
+        // The reserve is empty: generate the key on the calling thread
+        this.reserveMisses.increment();
+        return this.generate(keyLength, false);
+    }
+
+    public void shutdown() {
+        this.generators.shutdownNow();
+        if (this.parallelGenerator != null) {
+            this.parallelGenerator.shutdown();
+        }
+        if (this.backgroundGenerator != null) {
+            this.backgroundGenerator.shutdown();
+        }
+    }
+
+    public long getGeneratedKeys() {
+        return this.generatedKeys.sum();
+    }
+
+    public double getAverageGenerationMillis() {
+        long generated = this.generatedKeys.sum();
+        return generated > 0 ? this.generationNanos.sum() / 1e6 / generated : 0;
+    }
+
+    public double getMaxGenerationMillis() {
+        return this.maxGenerationNanos.get() / 1e6;
+    }
+
+    public long getReserveHits() {
+        return this.reserveHits.sum();
+    }
+
+    public long getReserveMisses() {
+        return this.reserveMisses.sum();
+    }
+
+    public int getReservedKeys(int keyLength) {
+        return this.reserve(keyLength).size();
+    }
+
+    protected PaillierCrtKey generateKey(int keyLength, boolean background) {
+        ParallelKeyGenerator generator = background ? this.backgroundGenerator : this.parallelGenerator;
+        if (generator != null) {
+            // Search the primes on several threads
+            return generator.generate(keyLength);
+        }
+        // Generate the Keys using the KeyGenerator of the Paillier library
+        // The generator is standardised to g = n+1, which allows a faster encryption
+        // The prime factors are recovered to precompute the CRT parameters
+        return PaillierCrtKey.fromKeyPair(KeyStore.normalizeGenerator(Paillier.Keygen(keyLength)));
+    }
+
+    private PaillierCrtKey generate(int keyLength, boolean background) {
+        long ti = System.nanoTime();
+        PaillierCrtKey key = this.generateKey(keyLength, background);
+        long elapsed = System.nanoTime() - ti;
+
+        this.generatedKeys.increment();
+        this.generationNanos.add(elapsed);
+        this.maxGenerationNanos.accumulateAndGet(elapsed, Math::max);
+        return key;
+    }
+
+    private BlockingQueue<PaillierCrtKey> reserve(int keyLength) {
+        return this.reserves.computeIfAbsent(keyLength, length -> new LinkedBlockingQueue<>());
+    }
+
+    private void refill(int keyLength) {
+        BlockingQueue<PaillierCrtKey> reserve = this.reserve(keyLength);
+        AtomicInteger pending = this.pendingGenerations.computeIfAbsent(keyLength, length -> new AtomicInteger());
+        // Schedule one generation per missing key, counting the ones already running
+        while (true) {
+            int running = pending.get();
+            if (reserve.size() + running >= this.reserveSize) {
+                return;
+            }
+            if (!pending.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            try {
+                this.generators.execute(() -> {
+                    try {
+                        reserve.offer(this.generate(keyLength, true));
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                return;
+            }
+        }
+    }
+}
@@ -1,13 +1,6 @@
 package eu.clarussecure.dataoperations.homomorphic;
 
-import com.mongodb.MongoClient;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
-import static com.mongodb.client.model.Filters.eq;
-import com.mongodb.client.model.UpdateOptions;
 import eu.clarussecure.encryption.paillier.KeyPair;
-import eu.clarussecure.encryption.paillier.Paillier;
 import eu.clarussecure.encryption.paillier.PublicKey;
 import eu.clarussecure.encryption.paillier.SecretKey;
 import java.io.IOException;
@@ -16,35 +9,80 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
 
 public class KeyStore {
     private static KeyStore instance = null;
-    private final MongoDatabase db;
-    private final MongoClient mongoClient;
-    private final MongoCollection<Document> keystoreCollection;
+    private final KeyStoreBackend backend;
     private int instancesNumber;
 
-    private String confFile = "/etc/clarus/clarus-keystore.conf";
-    private String mongoDBHostname = "localhost"; // Default server
-    private int mongoDBPort = 27017; // Default port
-    private String clarusDBName = "CLARUS"; // Default DB name
+    // The location of the configuration file can be overridden with a system property
+    private String confFile = System.getProperty("clarus.keystore.conf", "/etc/clarus/clarus-keystore.conf");
+    private Document configuration;
+    private String backendType = "mongo"; // Default backend
+    private int keyCacheSize = 128; // Default number of cached key pairs
+    private long keyCacheTTL = 3600; // Default lifetime of a cached key pair (in seconds)
+    private int randomizersLowWatermark = 64; // Default refill threshold of the randomizer pools
+    private int randomizersHighWatermark = 256; // Default capacity of the randomizer pools
+    private int randomizersThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int keygenReserve = 2; // Default number of keys generated in advance
+    private int keygenThreads = 1; // Default number of background key generation threads
+    private int keygenParallelism = Runtime.getRuntime().availableProcessors(); // Threads searching the primes
+    // Low priority threads searching the primes of the keys generated in advance
+    private int keygenBackgroundParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    private int cryptoThreads = Runtime.getRuntime().availableProcessors(); // Threads encrypting and decrypting
+    private int cryptoQueueSize = 1024; // Default number of queued crypto tasks per dataID
+    private long cryptoQueueTimeout = 30000; // Default wait for room in a full queue (in milliseconds)
+
+    // Keys already retrieved from the database, indexed by dataID
+    private final KeyCache<String, StoredKey> keyCache;
+    // Precomputed Paillier randomizers, indexed by dataID
+    private final Map<String, RandomizerPool> randomizerPools = new ConcurrentHashMap<>();
+    private final ExecutorService randomizersRefiller;
+    // Keys being retrieved, so concurrent requests for the same dataID wait for a single retrieval
+    private final Map<String, CompletableFuture<StoredKey>> pendingKeys = new ConcurrentHashMap<>();
+    // Generation of the key of each dataID, incremented by each invalidation of this dataID,
+    // so a retrieval running meanwhile does not cache a stale key
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final KeyGenerationService keyGenerator;
+    private final CryptoExecutor cryptoExecutor;
+    private final HomomorphicMetrics metrics = HomomorphicMetrics.getInstance();
 
     private KeyStore() {
-        // Initiate the basic connections to the database
-        // Correctly configure the log level
-        Logger mongoLogger = Logger.getLogger("org.mongodb.driver");
-        mongoLogger.setLevel(Level.SEVERE);
         // Open the configuraiton file to extract the information from it.
         this.processConfigurationFile();
-        // Create a new client connecting to "localhost" on port 
-        this.mongoClient = new MongoClient(this.mongoDBHostname, this.mongoDBPort);
+        // Initiate the storage of the keys selected in the configuration
+        this.backend = KeyStoreBackend.getInstance(this.backendType, this.configuration);
+
+        // Initialize the cache of key pairs
+        this.keyCache = new KeyCache<>(this.keyCacheSize, this.keyCacheTTL * 1000);
+
+        // Initialize the background threads computing the Paillier randomizers
+        this.randomizersRefiller = Executors.newFixedThreadPool(this.randomizersThreads, runnable -> {
+            Thread thread = new Thread(runnable, "clarus-homomorphic-randomizers");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Start generating keys in advance, so new dataIDs do not wait for the key generation
+        this.keyGenerator = new KeyGenerationService(this.keygenReserve, this.keygenThreads,
+                this.keygenParallelism, this.keygenBackgroundParallelism);
+        this.keyGenerator.prepare(this::getKeyLength);
+
+        // Initialize the threads running the encryptions and decryptions
+        this.cryptoExecutor = new CryptoExecutor(this.cryptoThreads, this.cryptoQueueSize, this.cryptoQueueTimeout);
 
-        // Get the database (will be created if not present)
-        this.db = mongoClient.getDatabase(this.clarusDBName);
-        this.keystoreCollection = this.db.getCollection("keystore");
+        // Expose the state of the key store with the metrics of the module
+        this.metrics.setKeyStore(this);
     }
 
     public static synchronized KeyStore getInstance() {
@@ -59,7 +97,12 @@ public class KeyStore {
         this.instancesNumber--;
 
         if (this.instancesNumber <= 0) {
-            this.mongoClient.close();
+            this.randomizerPools.values().forEach(RandomizerPool::close);
+            this.randomizersRefiller.shutdownNow();
+            this.keyGenerator.shutdown();
+            this.cryptoExecutor.shutdown();
+            this.backend.close();
+            this.metrics.setKeyStore(null);
             KeyStore.instance = null;
         }
     }
@@ -69,26 +112,194 @@ public class KeyStore {
     }
 
     public KeyPair retrieveKey(String dataID) throws IOException {
-        SecretKey sk = null;
-        PublicKey pk = null;
+        StoredKey key = this.retrieveStoredKey(dataID);
+        return key != null ? key.keyPair : null;
+    }
+
+    public PaillierCrtKey retrieveCrtKey(String dataID) throws IOException {
+        // The CRT parameters might not be available (e.g. if the modulus could not be factored)
+        StoredKey key = this.retrieveStoredKey(dataID);
+        return key != null ? key.crtKey : null;
+    }
+
+    private StoredKey retrieveStoredKey(String dataID) {
+        // Check first if the key was already retrieved
+        StoredKey cached = this.keyCache.get(dataID);
+        if (cached != null) {
+            this.metrics.add("keystore", dataID, Metric.KEY_CACHE_HITS, 1);
+            return cached;
+        }
+        this.metrics.add("keystore", dataID, Metric.KEY_CACHE_MISSES, 1);
+
+        // Only one thread retrieves (or generates) the key of a dataID, the other ones wait for it
+        CompletableFuture<StoredKey> retrieval = new CompletableFuture<>();
+        CompletableFuture<StoredKey> pending = this.pendingKeys.putIfAbsent(dataID, retrieval);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                // Throw the failure of the retrieval as is, like the thread retrieving the key does
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        AtomicLong generation = this.generations.computeIfAbsent(dataID, id -> new AtomicLong());
+        long loaded = generation.get();
+        try {
+            StoredKey key = this.loadKey(dataID);
+            if (key != null) {
+                this.keyCache.put(dataID, key);
+                if (generation.get() != loaded) {
+                    // The key was invalidated while it was retrieved: it might be stale
+                    this.keyCache.invalidate(dataID);
+                }
+            }
+            retrieval.complete(key);
+            return key;
+        } catch (RuntimeException e) {
+            retrieval.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.pendingKeys.remove(dataID, retrieval);
+        }
+    }
+
+    public CryptoExecutor getCryptoExecutor() {
+        return this.cryptoExecutor;
+    }
+
+    public KeyGenerationService getKeyGenerator() {
+        return this.keyGenerator;
+    }
+
+    public RandomizerPool retrieveRandomizerPool(String dataID) throws IOException {
+        // The pool must match the current Public Key of the dataID
+        KeyPair key = this.retrieveKey(dataID);
+        if (key == null) {
+            throw new IOException("No key is available for the dataID " + dataID);
+        }
+        PublicKey pk = key.getPublic();
+        RandomizerPool pool = this.randomizerPools.get(dataID);
+        if (pool != null && pool.matches(pk)) {
+            return pool;
+        }
+        return this.randomizerPools.compute(dataID, (id, current) -> {
+            if (current != null && current.matches(pk)) {
+                // Another thread already replaced the pool
+                return current;
+            }
+            if (current != null) {
+                // The key of this dataID has changed: discard the old randomizers
+                current.close();
+            }
+            return new RandomizerPool(pk, this.randomizersLowWatermark, this.randomizersHighWatermark,
+                    this.randomizersRefiller);
+        });
+    }
+
+    public void invalidateKey(String dataID) {
+        // Force the next retrieval of this key to go to the database
+        // (the retrievals already running do not cache their key, and the next ones do not wait for them)
+        AtomicLong generation = this.generations.get(dataID);
+        if (generation != null) {
+            generation.incrementAndGet();
+        }
+        this.pendingKeys.remove(dataID);
+        this.keyCache.invalidate(dataID);
+    }
+
+    public void invalidateAllKeys() {
+        this.generations.values().forEach(AtomicLong::incrementAndGet);
+        this.pendingKeys.clear();
+        this.keyCache.invalidateAll();
+    }
+
+    public long getKeyCacheHits() {
+        return this.keyCache.getHits();
+    }
+
+    public long getKeyCacheMisses() {
+        return this.keyCache.getMisses();
+    }
+
+    public int migrateKeys() {
+        // Add the CRT parameters to the keys generated before they were stored.
+        // This is done only once: migrated keys are not selected anymore.
+        int migrated = 0;
+        for (Document doc : this.backend.findKeysWithout("homo-priv-key-p")) {
+            if (this.migrateKey(doc.getString("dataID"), this.decodeKeyPair(doc)) != null) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    private StoredKey loadKey(String dataID) {
         KeyPair keyPair = null;
-        String stringPubKeyN, stringPubKeyG, stringPrivKeyL, stringPrivKeyM;
-        byte[] bytesPubKeyN = null, bytesPubKeyG = null, bytesPrivKeyL = null, bytesPrivKeyM = null;
-        BigInteger pkN = null, pkG = null, skL = null, skM = null;
+        PaillierCrtKey crtKey = null;
 
         // Check if there is an entry for this data ID
-        if (this.keystoreCollection.count(eq("dataID", dataID)) <= 0) {
+        Document doc = this.backend.findKey(dataID);
+        if (doc == null) {
             // There is not a Key-IV pair, generate one
             this.generateSecurityParameters(dataID);
+            // At this point, a Key-IV pair EXISTS in the DB for this dataID
+            doc = this.backend.findKey(dataID);
+        }
+        if (doc == null) {
+            return null;
+        }
+        // A key was found, retrieve it
+        keyPair = this.decodeKeyPair(doc);
+
+        if (doc.containsKey("homo-priv-key-p")) {
+            // Load the precomputed CRT parameters
+            crtKey = new PaillierCrtKey(keyPair, this.decodeInteger(doc, "homo-priv-key-p"),
+                    this.decodeInteger(doc, "homo-priv-key-q"), this.decodeInteger(doc, "homo-priv-key-p2"),
+                    this.decodeInteger(doc, "homo-priv-key-q2"), this.decodeInteger(doc, "homo-priv-key-hp"),
+                    this.decodeInteger(doc, "homo-priv-key-hq"));
+        } else {
+            // This key was generated without the CRT parameters: migrate it
+            crtKey = this.migrateKey(dataID, keyPair);
         }
+        return new StoredKey(keyPair, crtKey);
+    }
+
+    private PaillierCrtKey migrateKey(String dataID, KeyPair keyPair) {
+        PaillierCrtKey crtKey;
+        try {
+            crtKey = PaillierCrtKey.fromKeyPair(keyPair);
+        } catch (IllegalArgumentException e) {
+            // The key will be used without the CRT optimization
+            Logger.getLogger(KeyStore.class.getName()).log(Level.WARNING,
+                    "CRT parameters could not be computed for dataID " + dataID, e);
+            return null;
+        }
+        Document fields = new Document("homo-priv-key-p", this.encodeInteger(crtKey.getP()));
+        fields.append("homo-priv-key-q", this.encodeInteger(crtKey.getQ()));
+        fields.append("homo-priv-key-p2", this.encodeInteger(crtKey.getPSquared()));
+        fields.append("homo-priv-key-q2", this.encodeInteger(crtKey.getQSquared()));
+        fields.append("homo-priv-key-hp", this.encodeInteger(crtKey.getHp()));
+        fields.append("homo-priv-key-hq", this.encodeInteger(crtKey.getHq()));
+        this.backend.updateKey(dataID, fields);
+        return crtKey;
+    }
+
+    private KeyPair decodeKeyPair(Document doc) {
+        SecretKey sk = null;
+        PublicKey pk = null;
+        KeyPair keyPair = null;
+        String stringPubKeyN, stringPubKeyG, stringPrivKeyL, stringPrivKeyM;
+        byte[] bytesPubKeyN = null, bytesPubKeyG = null, bytesPrivKeyL = null, bytesPrivKeyM = null;
+        BigInteger pkN = null, pkG = null, skL = null, skM = null;
 
-        // At this point, a Key-IV pair EXISTS in the DB for this dataID
-        // Retrieve the key
-        MongoCursor<Document> keys = this.keystoreCollection.find(eq("dataID", dataID)).iterator();
         Base64.Decoder decoder = Base64.getDecoder();
-        if (keys.hasNext()) {
-            // A key was found, retrieve it
-            Document doc = keys.next();
+        if (doc != null) {
             stringPubKeyN = doc.getString("homo-pub-key-n");
             stringPubKeyG = doc.getString("homo-pub-key-g");
             stringPrivKeyL = doc.getString("homo-priv-key-lambda");
@@ -122,8 +333,12 @@ public class KeyStore {
         // Extract the length of the key from the configs
         int keyLength = this.getKeyLength();
 
-        // Generate the Keys using the KeyGenerator of the Paillier library
-        keys = Paillier.Keygen(keyLength);
+        // Take a key generated in advance (with g = n+1 and the CRT parameters)
+        long start = System.nanoTime();
+        PaillierCrtKey crtKey = this.keyGenerator.take(keyLength);
+        this.metrics.add("keystore", dataID, Metric.KEY_GENERATIONS, 1);
+        this.metrics.add("keystore", dataID, Metric.KEY_GENERATION_NANOS, System.nanoTime() - start);
+        keys = crtKey.getKeyPair();
 
         BigInteger pkN = keys.getPublic().getN();
         BigInteger pkG = keys.getPublic().getG();
@@ -153,22 +368,44 @@ public class KeyStore {
         doc.append("homo-pub-key-g", stringPubKeyG);
         doc.append("homo-priv-key-lambda", stringPrivKeyL);
         doc.append("homo-priv-key-mu", stringPrivKeyM);
+        doc.append("homo-priv-key-p", this.encodeInteger(crtKey.getP()));
+        doc.append("homo-priv-key-q", this.encodeInteger(crtKey.getQ()));
+        doc.append("homo-priv-key-p2", this.encodeInteger(crtKey.getPSquared()));
+        doc.append("homo-priv-key-q2", this.encodeInteger(crtKey.getQSquared()));
+        doc.append("homo-priv-key-hp", this.encodeInteger(crtKey.getHp()));
+        doc.append("homo-priv-key-hq", this.encodeInteger(crtKey.getHq()));
 
         // Store the encoded key into the database
-        boolean ack = this.keystoreCollection.replaceOne(eq("dataID", dataID), doc, new UpdateOptions().upsert(true))
-                .wasAcknowledged();
-        return ack;
+        // (this runs within the retrieval of the key, after the cache missed: there is no stale key to drop,
+        // and the retrieval caches the new one)
+        return this.backend.storeKey(dataID, doc);
+    }
+
+    protected static KeyPair normalizeGenerator(KeyPair keys) {
+        // Replace the generator of the key by g = n+1.
+        // In this case L(g^lambda mod n^2) = lambda mod n, so mu = lambda^-1 mod n.
+        BigInteger n = keys.getPublic().getN();
+        BigInteger g = n.add(BigInteger.ONE);
+        if (keys.getPublic().getG().equals(g)) {
+            return keys;
+        }
+        BigInteger lambda = keys.getSecret().getLambda();
+        return new KeyPair(new PublicKey(n, g), new SecretKey(lambda, lambda.modInverse(n)));
+    }
+
+    private String encodeInteger(BigInteger value) {
+        return Base64.getEncoder().encodeToString(value.toByteArray());
+    }
+
+    private BigInteger decodeInteger(Document doc, String field) {
+        return new BigInteger(Base64.getDecoder().decode(doc.getString(field)));
     }
 
     private int getKeyLength() {
         // This method should retrieve the key length (in bits) from the DB
-        MongoCursor<Document> cursor = this.keystoreCollection.find(eq("conf", "homomorphic-keylength")).iterator();
-
-        int keyLength = 2048; // Default value is 2048 bits
-        while (cursor.hasNext()) {
-            keyLength = cursor.next().getDouble("keylength").intValue();
-        }
-        return keyLength;
+        Integer keyLength = this.backend.findKeyLength();
+        // Default value is 2048 bits
+        return keyLength != null ? keyLength : 2048;
     }
 
     private void processConfigurationFile() throws RuntimeException {
@@ -180,11 +417,63 @@ public class KeyStore {
 
             // Use the bson document parser to extract the info
             Document doc = Document.parse(content);
-            this.mongoDBHostname = doc.getString("CLARUS_keystore_db_hostname");
-            this.mongoDBPort = doc.getInteger("CLARUS_keystore_db_port");
-            this.clarusDBName = doc.getString("CLARUS_keystore_db_name");
+            this.configuration = doc;
+            // The parameters of the backend are processed by the backend itself
+            if (doc.containsKey("CLARUS_keystore_backend")) {
+                this.backendType = doc.getString("CLARUS_keystore_backend");
+            }
+            // The configuration of the key cache is optional
+            if (doc.containsKey("CLARUS_keystore_cache_size")) {
+                this.keyCacheSize = doc.getInteger("CLARUS_keystore_cache_size");
+            }
+            if (doc.containsKey("CLARUS_keystore_cache_ttl")) {
+                this.keyCacheTTL = doc.getInteger("CLARUS_keystore_cache_ttl");
+            }
+            // The same applies to the pools of precomputed randomizers
+            if (doc.containsKey("CLARUS_keystore_randomizers_low_watermark")) {
+                this.randomizersLowWatermark = doc.getInteger("CLARUS_keystore_randomizers_low_watermark");
+            }
+            if (doc.containsKey("CLARUS_keystore_randomizers_high_watermark")) {
+                this.randomizersHighWatermark = doc.getInteger("CLARUS_keystore_randomizers_high_watermark");
+            }
+            if (doc.containsKey("CLARUS_keystore_randomizers_threads")) {
+                this.randomizersThreads = doc.getInteger("CLARUS_keystore_randomizers_threads");
+            }
+            // And to the generation of keys in advance
+            if (doc.containsKey("CLARUS_keystore_keygen_reserve")) {
+                this.keygenReserve = doc.getInteger("CLARUS_keystore_keygen_reserve");
+            }
+            if (doc.containsKey("CLARUS_keystore_keygen_threads")) {
+                this.keygenThreads = doc.getInteger("CLARUS_keystore_keygen_threads");
+            }
+            if (doc.containsKey("CLARUS_keystore_keygen_parallelism")) {
+                this.keygenParallelism = doc.getInteger("CLARUS_keystore_keygen_parallelism");
+            }
+            if (doc.containsKey("CLARUS_keystore_keygen_background_parallelism")) {
+                this.keygenBackgroundParallelism = doc.getInteger("CLARUS_keystore_keygen_background_parallelism");
+            }
+            if (doc.containsKey("CLARUS_keystore_crypto_threads")) {
+                this.cryptoThreads = doc.getInteger("CLARUS_keystore_crypto_threads");
+            }
+            if (doc.containsKey("CLARUS_keystore_crypto_queue_size")) {
+                this.cryptoQueueSize = doc.getInteger("CLARUS_keystore_crypto_queue_size");
+            }
+            if (doc.containsKey("CLARUS_keystore_crypto_queue_timeout")) {
+                this.cryptoQueueTimeout = doc.getInteger("CLARUS_keystore_crypto_queue_timeout");
+            }
         } catch (IOException e) {
             throw new RuntimeException("CLARUS configuration file could not be processed", e);
         }
     }
+
+    private static class StoredKey {
+        // Key material of a single dataID, as kept in the cache
+        private final KeyPair keyPair;
+        private final PaillierCrtKey crtKey;
+
+        private StoredKey(KeyPair keyPair, PaillierCrtKey crtKey) {
+            this.keyPair = keyPair;
+            this.crtKey = crtKey;
+        }
+    }
 }
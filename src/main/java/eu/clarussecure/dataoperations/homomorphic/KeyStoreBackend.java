@@ -0,0 +1,41 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.List;
+import org.bson.Document;
+
+public interface KeyStoreBackend {
+    // Storage of the key documents used by the KeyStore.
+    // Each key is stored as a document with a "dataID" field and the Base64-encoded key parameters.
+    // The backend is selected with the "CLARUS_keystore_backend" entry of the configuration file.
+
+    // Return the document of the given dataID, or null if there is none
+    Document findKey(String dataID);
+
+    // Return the documents of the keys not containing the given field
+    List<Document> findKeysWithout(String field);
+
+    // Insert or replace the document of the given dataID
+    boolean storeKey(String dataID, Document key);
+
+    // Add (or replace) the given fields to the document of the given dataID
+    boolean updateKey(String dataID, Document fields);
+
+    // Return the configured key length (in bits), or null if it is not configured
+    Integer findKeyLength();
+
+    void close();
+
+    public static KeyStoreBackend getInstance(String backend, Document configuration) {
+        // Extend this list to support more backends
+        switch (backend) {
+        case "mongo":
+            return new MongoKeyStoreBackend(configuration);
+        case "file":
+            return new FileKeyStoreBackend(configuration);
+        case "memory":
+            return new MemoryKeyStoreBackend(configuration);
+        default:
+            throw new UnsupportedOperationException("The key store backend '" + backend + "' is not supported.");
+        }
+    }
+}
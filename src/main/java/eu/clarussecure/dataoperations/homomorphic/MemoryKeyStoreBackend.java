@@ -0,0 +1,56 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.bson.Document;
+
+public class MemoryKeyStoreBackend implements KeyStoreBackend {
+    // Key documents kept only in memory (they are lost when the module stops).
+    // Intended for tests and benchmarks, which should not depend on a database.
+    private final Map<String, Document> keys = new ConcurrentHashMap<>();
+    private Integer keyLength = null;
+
+    public MemoryKeyStoreBackend(Document configuration) {
+        // The key length can be given in the configuration, since there is no stored one
+        if (configuration.containsKey("CLARUS_keystore_keylength")) {
+            this.keyLength = configuration.getInteger("CLARUS_keystore_keylength");
+        }
+    }
+
+    @Override
+    public Document findKey(String dataID) {
+        return this.keys.get(dataID);
+    }
+
+    @Override
+    public List<Document> findKeysWithout(String field) {
+        return this.keys.values().stream().filter(key -> !key.containsKey(field)).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean storeKey(String dataID, Document key) {
+        this.keys.put(dataID, key);
+        return true;
+    }
+
+    @Override
+    public boolean updateKey(String dataID, Document fields) {
+        return this.keys.computeIfPresent(dataID, (id, current) -> {
+            Document updated = new Document(current);
+            updated.putAll(fields);
+            return updated;
+        }) != null;
+    }
+
+    @Override
+    public Integer findKeyLength() {
+        return this.keyLength;
+    }
+
+    @Override
+    public void close() {
+        this.keys.clear();
+    }
+}
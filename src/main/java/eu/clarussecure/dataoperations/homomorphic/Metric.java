@@ -0,0 +1,27 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+public enum Metric {
+    // Counters and timers recorded by HomomorphicMetrics, for each operation and dataID
+    REQUESTS("requests"),
+    FAILURES("failures"),
+    TIME_NANOS("timeNanos"),
+    ROWS("rows"),
+    CELLS("cells"),
+    ENCRYPTIONS("encryptions"),
+    DECRYPTIONS("decryptions"),
+    BYTES("bytes"),
+    KEY_CACHE_HITS("keyCacheHits"),
+    KEY_CACHE_MISSES("keyCacheMisses"),
+    KEY_GENERATIONS("keyGenerations"),
+    KEY_GENERATION_NANOS("keyGenerationNanos");
+
+    private final String name;
+
+    private Metric(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
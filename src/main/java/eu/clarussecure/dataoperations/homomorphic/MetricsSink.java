@@ -0,0 +1,7 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+public interface MetricsSink {
+    // Receiver of the metrics recorded by the module (e.g. to forward them to a monitoring system).
+    // It is called on the threads doing the work, so it must be fast and thread-safe.
+    void record(String operation, String dataID, Metric metric, long value);
+}
@@ -0,0 +1,88 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import com.mongodb.client.model.UpdateOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+
+public class MongoKeyStoreBackend implements KeyStoreBackend {
+    // Key documents stored in the "keystore" collection of a Mongo database
+    private final MongoDatabase db;
+    private final MongoClient mongoClient;
+    private final MongoCollection<Document> keystoreCollection;
+
+    private String mongoDBHostname = "localhost"; // Default server
+    private int mongoDBPort = 27017; // Default port
+    private String clarusDBName = "CLARUS"; // Default DB name
+
+    public MongoKeyStoreBackend(Document configuration) {
+        // Initiate the basic connections to the database
+        // Correctly configure the log level
+        Logger mongoLogger = Logger.getLogger("org.mongodb.driver");
+        mongoLogger.setLevel(Level.SEVERE);
+        // Extract the connection information from the configuration
+        if (configuration.containsKey("CLARUS_keystore_db_hostname")) {
+            this.mongoDBHostname = configuration.getString("CLARUS_keystore_db_hostname");
+        }
+        if (configuration.containsKey("CLARUS_keystore_db_port")) {
+            this.mongoDBPort = configuration.getInteger("CLARUS_keystore_db_port");
+        }
+        if (configuration.containsKey("CLARUS_keystore_db_name")) {
+            this.clarusDBName = configuration.getString("CLARUS_keystore_db_name");
+        }
+        // Create a new client connecting to "localhost" on port 
+        this.mongoClient = new MongoClient(this.mongoDBHostname, this.mongoDBPort);
+
+        // Get the database (will be created if not present)
+        this.db = mongoClient.getDatabase(this.clarusDBName);
+        this.keystoreCollection = this.db.getCollection("keystore");
+    }
+
+    @Override
+    public Document findKey(String dataID) {
+        MongoCursor<Document> keys = this.keystoreCollection.find(eq("dataID", dataID)).iterator();
+        return keys.hasNext() ? keys.next() : null;
+    }
+
+    @Override
+    public List<Document> findKeysWithout(String field) {
+        return this.keystoreCollection.find(and(exists("dataID"), exists(field, false))).into(new ArrayList<>());
+    }
+
+    @Override
+    public boolean storeKey(String dataID, Document key) {
+        return this.keystoreCollection.replaceOne(eq("dataID", dataID), key, new UpdateOptions().upsert(true))
+                .wasAcknowledged();
+    }
+
+    @Override
+    public boolean updateKey(String dataID, Document fields) {
+        return this.keystoreCollection.updateOne(eq("dataID", dataID), new Document("$set", fields))
+                .wasAcknowledged();
+    }
+
+    @Override
+    public Integer findKeyLength() {
+        MongoCursor<Document> cursor = this.keystoreCollection.find(eq("conf", "homomorphic-keylength")).iterator();
+
+        Integer keyLength = null;
+        while (cursor.hasNext()) {
+            keyLength = cursor.next().getDouble("keylength").intValue();
+        }
+        return keyLength;
+    }
+
+    @Override
+    public void close() {
+        this.mongoClient.close();
+    }
+}
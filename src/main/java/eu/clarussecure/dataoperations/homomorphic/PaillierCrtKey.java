@@ -0,0 +1,134 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.encryption.paillier.EncryptedInteger;
+import eu.clarussecure.encryption.paillier.KeyPair;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+public class PaillierCrtKey {
+    // Decryption parameters based on the prime factors of the Public Key modulus (n = p*q).
+    // Using the Chinese Remainder Theorem, the decryption is split in two exponentiations
+    // modulo p^2 and q^2 with exponents of half the size, instead of c^lambda mod n^2.
+    // The constants hp, hq, p^2, q^2 (and q^-1 mod p) only depend on the key, so they are precomputed.
+
+    // Maximum number of random bases tried to factor the modulus
+    private static final int FACTORING_ATTEMPTS = 128;
+
+    private final KeyPair keyPair;
+    private final BigInteger p;
+    private final BigInteger q;
+    private final BigInteger pSquared;
+    private final BigInteger qSquared;
+    private final BigInteger hp;
+    private final BigInteger hq;
+    private final BigInteger qInverse; // q^-1 mod p
+
+    public PaillierCrtKey(KeyPair keyPair, BigInteger p, BigInteger q) {
+        this(keyPair, p, q, p.multiply(p), q.multiply(q), null, null);
+    }
+
+    public PaillierCrtKey(KeyPair keyPair, BigInteger p, BigInteger q, BigInteger pSquared, BigInteger qSquared,
+            BigInteger hp, BigInteger hq) {
+        if (!p.multiply(q).equals(keyPair.getPublic().getN())) {
+            throw new IllegalArgumentException("The given primes are not the factors of the Public Key modulus");
+        }
+        this.keyPair = keyPair;
+        this.p = p;
+        this.q = q;
+        this.pSquared = pSquared;
+        this.qSquared = qSquared;
+        // Compute the missing constants
+        this.hp = hp != null ? hp : this.h(p, pSquared);
+        this.hq = hq != null ? hq : this.h(q, qSquared);
+        this.qInverse = q.modInverse(p);
+    }
+
+    public static PaillierCrtKey fromKeyPair(KeyPair keyPair) {
+        // Recover the factors of n from the Secret Key.
+        // lambda is a multiple of the Carmichael function of n, which allows to find
+        // a non-trivial square root of 1 modulo n (as in the Miller-Rabin test)
+        BigInteger n = keyPair.getPublic().getN();
+        BigInteger lambda = keyPair.getSecret().getLambda();
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        // lambda = 2^s * t, with t odd
+        int s = lambda.getLowestSetBit();
+        BigInteger t = lambda.shiftRight(s);
+        SecureRandom random = new SecureRandom();
+
+        for (int attempt = 0; attempt < FACTORING_ATTEMPTS; attempt++) {
+            BigInteger a = new BigInteger(n.bitLength() - 1, random).add(BigInteger.valueOf(2));
+            BigInteger factor = a.gcd(n);
+            if (factor.equals(BigInteger.ONE)) {
+                factor = null;
+                BigInteger x = a.modPow(t, n);
+                for (int i = 0; i < s && !x.equals(BigInteger.ONE) && !x.equals(nMinusOne); i++) {
+                    BigInteger y = x.multiply(x).mod(n);
+                    if (y.equals(BigInteger.ONE)) {
+                        // x is a non-trivial square root of 1
+                        factor = x.subtract(BigInteger.ONE).gcd(n);
+                        break;
+                    }
+                    x = y;
+                }
+            }
+            if (factor != null && !factor.equals(BigInteger.ONE) && !factor.equals(n)) {
+                return new PaillierCrtKey(keyPair, factor, n.divide(factor));
+            }
+        }
+        throw new IllegalArgumentException("The Public Key modulus could not be factored");
+    }
+
+    public BigInteger decrypt(EncryptedInteger encrypted) {
+        return this.decrypt(encrypted.getValue());
+    }
+
+    public BigInteger decrypt(BigInteger c) {
+        // m_p = L_p(c^(p-1) mod p^2) * hp mod p
+        BigInteger mp = this.l(c.modPow(this.p.subtract(BigInteger.ONE), this.pSquared), this.p).multiply(this.hp)
+                .mod(this.p);
+        // m_q = L_q(c^(q-1) mod q^2) * hq mod q
+        BigInteger mq = this.l(c.modPow(this.q.subtract(BigInteger.ONE), this.qSquared), this.q).multiply(this.hq)
+                .mod(this.q);
+        // Recombine: m = m_q + q * ((m_p - m_q) * q^-1 mod p)
+        return mp.subtract(mq).multiply(this.qInverse).mod(this.p).multiply(this.q).add(mq);
+    }
+
+    public KeyPair getKeyPair() {
+        return this.keyPair;
+    }
+
+    public BigInteger getP() {
+        return this.p;
+    }
+
+    public BigInteger getQ() {
+        return this.q;
+    }
+
+    public BigInteger getPSquared() {
+        return this.pSquared;
+    }
+
+    public BigInteger getQSquared() {
+        return this.qSquared;
+    }
+
+    public BigInteger getHp() {
+        return this.hp;
+    }
+
+    public BigInteger getHq() {
+        return this.hq;
+    }
+
+    private BigInteger h(BigInteger prime, BigInteger primeSquared) {
+        // h = L_prime(g^(prime-1) mod prime^2)^-1 mod prime
+        BigInteger g = this.keyPair.getPublic().getG();
+        return this.l(g.modPow(prime.subtract(BigInteger.ONE), primeSquared), prime).modInverse(prime);
+    }
+
+    private BigInteger l(BigInteger x, BigInteger divisor) {
+        // L(x) = (x - 1) / divisor
+        return x.subtract(BigInteger.ONE).divide(divisor);
+    }
+}
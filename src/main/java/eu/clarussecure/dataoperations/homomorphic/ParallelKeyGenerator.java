@@ -0,0 +1,144 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.encryption.paillier.KeyPair;
+import eu.clarussecure.encryption.paillier.PublicKey;
+import eu.clarussecure.encryption.paillier.SecretKey;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ParallelKeyGenerator {
+    // Paillier key generator searching the primes p and q concurrently on several threads.
+    // Each thread draws a random odd starting point, sieves a window of consecutive odd candidates
+    // with the small primes, and runs the Miller-Rabin test only on the candidates surviving the sieve.
+    // The first two distinct primes found are used to build the key, with g = n+1 and
+    // lambda = lcm(p-1, q-1), so the keys are compatible with the Paillier library.
+
+    // Small primes used to sieve the candidates
+    private static final int SIEVE_LIMIT = 1 << 16;
+    private static final int[] SMALL_PRIMES = smallPrimes(SIEVE_LIMIT);
+    // Number of odd candidates sieved at once
+    private static final int WINDOW = 1 << 12;
+    // The probability of a composite passing the test is lower than 2^-CERTAINTY
+    private static final int CERTAINTY = 100;
+
+    private final int parallelism;
+    private final ExecutorService searchers;
+    private final SecureRandom random = new SecureRandom();
+
+    public ParallelKeyGenerator(int parallelism) {
+        this(parallelism, Thread.NORM_PRIORITY);
+    }
+
+    public ParallelKeyGenerator(int parallelism, int priority) {
+        // The generators working in the background use a low priority
+        this.parallelism = parallelism;
+        this.searchers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, priority < Thread.NORM_PRIORITY
+                    ? "clarus-homomorphic-background-primes" : "clarus-homomorphic-primes");
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        });
+    }
+
+    public PaillierCrtKey generate(int keyLength) {
+        // Both primes have half the length of the modulus
+        int primeLength = keyLength / 2;
+        BlockingQueue<BigInteger> primes = new LinkedBlockingQueue<>();
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        List<Future<?>> searches = new ArrayList<>();
+        for (int i = 0; i < this.parallelism; i++) {
+            searches.add(this.searchers.submit(() -> this.search(primeLength, primes, done)));
+        }
+
+        BigInteger p, q;
+        try {
+            p = primes.take();
+            do {
+                q = primes.take();
+            } while (q.equals(p));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating a Paillier key", e);
+        } finally {
+            // Stop the other searches
+            done.set(true);
+            searches.forEach(search -> search.cancel(false));
+        }
+        return this.buildKey(p, q);
+    }
+
+    public void shutdown() {
+        this.searchers.shutdownNow();
+    }
+
+    private PaillierCrtKey buildKey(BigInteger p, BigInteger q) {
+        BigInteger n = p.multiply(q);
+        BigInteger g = n.add(BigInteger.ONE);
+        // lambda = lcm(p-1, q-1)
+        BigInteger pMinusOne = p.subtract(BigInteger.ONE);
+        BigInteger qMinusOne = q.subtract(BigInteger.ONE);
+        BigInteger lambda = pMinusOne.multiply(qMinusOne).divide(pMinusOne.gcd(qMinusOne));
+        // With g = n+1, mu = lambda^-1 mod n
+        BigInteger mu = lambda.modInverse(n);
+
+        KeyPair keyPair = new KeyPair(new PublicKey(n, g), new SecretKey(lambda, mu));
+        return new PaillierCrtKey(keyPair, p, q);
+    }
+
+    private void search(int primeLength, BlockingQueue<BigInteger> primes, AtomicBoolean done) {
+        boolean[] composite = new boolean[WINDOW];
+        while (!done.get() && !Thread.currentThread().isInterrupted()) {
+            // Random odd starting point, with the two highest bits set so p*q has exactly 2*primeLength bits
+            BigInteger base = new BigInteger(primeLength, this.random).setBit(primeLength - 1)
+                    .setBit(primeLength - 2).setBit(0);
+
+            // Sieve the candidates base + 2k, 0 <= k < WINDOW
+            Arrays.fill(composite, false);
+            for (int prime : SMALL_PRIMES) {
+                int remainder = base.mod(BigInteger.valueOf(prime)).intValue();
+                // base + 2k = 0 mod prime <=> k = -remainder * 2^-1 mod prime
+                int first = (int) ((long) (prime - remainder) % prime * ((prime + 1) / 2) % prime);
+                for (int k = first; k < WINDOW; k += prime) {
+                    composite[k] = true;
+                }
+            }
+
+            // Test the remaining candidates
+            for (int k = 0; k < WINDOW && !done.get(); k++) {
+                if (composite[k]) {
+                    continue;
+                }
+                BigInteger candidate = base.add(BigInteger.valueOf(2L * k));
+                if (candidate.bitLength() == primeLength && candidate.isProbablePrime(CERTAINTY)) {
+                    primes.offer(candidate);
+                }
+            }
+        }
+    }
+
+    private static int[] smallPrimes(int limit) {
+        // Odd primes below the limit (sieve of Eratosthenes)
+        boolean[] composite = new boolean[limit];
+        List<Integer> primes = new ArrayList<>();
+        for (int i = 3; i < limit; i += 2) {
+            if (!composite[i]) {
+                primes.add(i);
+                for (long j = (long) i * i; j < limit; j += 2L * i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        return primes.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,74 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+public class ProtectionPlan {
+    // Protection of a single attribute, as resolved from the security policy:
+    // the protection rule matching its name, the attribute type and everything derived from it.
+    // The plans are computed once per list of attribute names, so processing a cell does not require
+    // matching the name against the protection rules again.
+
+    private final String rule; // null if the attribute is not covered by the policy
+    private final String type;
+    private final String protection;
+    private final String dataID;
+    private final String dataType;
+    private final SlotPacking packing; // null if the type is not packed
+    private final int slot;
+    private final boolean binary;
+
+    public ProtectionPlan(String rule, String type, String protection, String dataID, String dataType,
+            SlotPacking packing, boolean binary) {
+        this.rule = rule;
+        this.type = type;
+        this.protection = protection;
+        this.dataID = dataID;
+        this.dataType = dataType;
+        this.packing = packing;
+        this.slot = packing != null ? packing.getSlot(rule) : -1;
+        this.binary = binary;
+    }
+
+    public String getRule() {
+        return this.rule;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public String getProtection() {
+        return this.protection;
+    }
+
+    public String getDataID() {
+        return this.dataID;
+    }
+
+    public String getDataType() {
+        return this.dataType;
+    }
+
+    public SlotPacking getPacking() {
+        return this.packing;
+    }
+
+    public int getSlot() {
+        return this.slot;
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    public boolean isCovered() {
+        return this.rule != null;
+    }
+
+    public boolean isHomomorphic() {
+        return "homomorphic".equals(this.protection);
+    }
+
+    public boolean isNumeric() {
+        // Homomorphic attributes are assumed to be integers, except the geometric objects
+        return this.isHomomorphic() && !"geometric_object".equals(this.dataType);
+    }
+}
@@ -0,0 +1,126 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.encryption.paillier.EncryptedInteger;
+import eu.clarussecure.encryption.paillier.PublicKey;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RandomizerPool {
+    // Pool of precomputed Paillier randomizers (r^n mod n^2) for a single Public Key.
+    // A Paillier ciphertext is c = g^m * r^n mod n^2. The expensive part, r^n mod n^2,
+    // does not depend on the plaintext, so it can be computed ahead of demand by background threads.
+    // The pool is refilled up to the "high watermark" each time it drops below the "low watermark".
+
+    private final PublicKey pk;
+    private final BigInteger n;
+    private final BigInteger nSquared;
+    private final boolean simpleGenerator; // g = n+1
+    private final int lowWatermark;
+    private final BlockingQueue<BigInteger> randomizers;
+    private final ExecutorService refiller;
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean closed = false;
+
+    public RandomizerPool(PublicKey pk, int lowWatermark, int highWatermark, ExecutorService refiller) {
+        if (lowWatermark < 0 || highWatermark <= 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException(
+                    "Invalid randomizer pool watermarks: low=" + lowWatermark + ", high=" + highWatermark);
+        }
+        this.pk = pk;
+        this.n = pk.getN();
+        this.nSquared = this.n.multiply(this.n);
+        this.simpleGenerator = pk.getG().equals(this.n.add(BigInteger.ONE));
+        this.lowWatermark = lowWatermark;
+        this.randomizers = new LinkedBlockingQueue<>(highWatermark);
+        this.refiller = refiller;
+
+        // Start filling the pool right away
+        this.scheduleRefill();
+    }
+
+    public PublicKey getPublicKey() {
+        return this.pk;
+    }
+
+    public boolean matches(PublicKey other) {
+        return this.n.equals(other.getN()) && this.pk.getG().equals(other.getG());
+    }
+
+    public int available() {
+        return this.randomizers.size();
+    }
+
+    public EncryptedInteger encrypt(BigInteger plainValue) {
+        // c = g^m * r^n mod n^2, using a precomputed r^n mod n^2
+        BigInteger gm;
+        if (this.simpleGenerator) {
+            // With g = n+1, the binomial theorem gives g^m = 1 + m*n mod n^2
+            gm = plainValue.multiply(this.n).add(BigInteger.ONE).mod(this.nSquared);
+        } else {
+            gm = this.pk.getG().modPow(plainValue, this.nSquared);
+        }
+        BigInteger c = gm.multiply(this.nextRandomizer()).mod(this.nSquared);
+        return new EncryptedInteger(c, this.pk);
+    }
+
+    public BigInteger nextRandomizer() {
+        BigInteger randomizer = this.randomizers.poll();
+        if (this.randomizers.size() < this.lowWatermark) {
+            this.scheduleRefill();
+        }
+        if (randomizer == null) {
+            // The pool is exhausted: compute the randomizer on the calling thread
+            randomizer = this.computeRandomizer();
+        }
+        return randomizer;
+    }
+
+    public void close() {
+        this.closed = true;
+        this.randomizers.clear();
+    }
+
+    private void scheduleRefill() {
+        // Only one refill task per pool at a time
+        if (this.closed || !this.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.refiller.execute(this::refill);
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down. The pool will compute the randomizers on demand
+            this.refilling.set(false);
+        }
+    }
+
+    private void refill() {
+        try {
+            while (!this.closed && this.randomizers.remainingCapacity() > 0) {
+                if (!this.randomizers.offer(this.computeRandomizer())) {
+                    break;
+                }
+            }
+        } finally {
+            this.refilling.set(false);
+        }
+        // Randomizers might have been consumed while finishing the refill
+        if (this.randomizers.size() < this.lowWatermark) {
+            this.scheduleRefill();
+        }
+    }
+
+    private BigInteger computeRandomizer() {
+        // Draw r uniformly in Z*_n and compute r^n mod n^2
+        BigInteger r;
+        do {
+            r = new BigInteger(this.n.bitLength(), this.random);
+        } while (r.signum() == 0 || r.compareTo(this.n) >= 0 || !r.gcd(this.n).equals(BigInteger.ONE));
+        return r.modPow(this.n, this.nSquared);
+    }
+}
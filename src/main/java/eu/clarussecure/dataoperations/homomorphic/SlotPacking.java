@@ -0,0 +1,77 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SlotPacking {
+    // Layout of the plaintext slots of a packed attribute type.
+    // The values of all the attributes of the type are stored in a single Paillier plaintext:
+    // slot i holds the value of the i-th attribute (in the order of the security policy),
+    // shifted by i * slotBits bits. Since the Paillier addition adds the plaintexts,
+    // homomorphic sums are computed slot-wise.
+    // The highest "headroomBits" of each slot are kept empty so the sums do not overflow
+    // into the next slot: up to 2^headroomBits values can be safely added.
+
+    private final String type;
+    private final int slotBits;
+    private final int headroomBits;
+    private final List<String> attributes = new ArrayList<>();
+
+    public SlotPacking(String type, int slotBits, int headroomBits) {
+        if (slotBits <= 0 || slotBits > 63 || headroomBits < 0 || headroomBits >= slotBits) {
+            throw new IllegalArgumentException("Invalid slot packing for type '" + type + "': slot_bits=" + slotBits
+                    + ", slot_headroom=" + headroomBits);
+        }
+        this.type = type;
+        this.slotBits = slotBits;
+        this.headroomBits = headroomBits;
+    }
+
+    public void addAttribute(String attributeName) {
+        // The slots are assigned in order of addition
+        if (!this.attributes.contains(attributeName)) {
+            this.attributes.add(attributeName);
+        }
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public int getSlot(String attributeName) {
+        return this.attributes.indexOf(attributeName);
+    }
+
+    public int getSlots() {
+        return this.attributes.size();
+    }
+
+    public boolean canSum(long count) {
+        // Whether the sum of this number of values is guaranteed to stay within the slots
+        return count <= 1L << this.headroomBits;
+    }
+
+    public void checkCapacity(BigInteger modulus) {
+        // The packed plaintext MUST be smaller than the modulus of the key
+        if (this.attributes.size() * this.slotBits >= modulus.bitLength()) {
+            throw new IllegalArgumentException("The " + this.attributes.size() + " slots of " + this.slotBits
+                    + " bits of type '" + this.type + "' do not fit in a " + modulus.bitLength() + " bits key");
+        }
+    }
+
+    public BigInteger pack(BigInteger packed, int slot, long value) {
+        // Insert the value into the given slot
+        if (value < 0 || 64 - Long.numberOfLeadingZeros(value) > this.slotBits - this.headroomBits) {
+            throw new IllegalArgumentException("The value " + value + " does not fit in the slots of type '"
+                    + this.type + "' (" + (this.slotBits - this.headroomBits) + " bits)");
+        }
+        return packed.or(BigInteger.valueOf(value).shiftLeft(slot * this.slotBits));
+    }
+
+    public long unpack(BigInteger packed, int slot) {
+        // Extract the (possibly summed) value of the given slot
+        long mask = (1L << this.slotBits) - 1;
+        return packed.shiftRight(slot * this.slotBits).longValue() & mask;
+    }
+}
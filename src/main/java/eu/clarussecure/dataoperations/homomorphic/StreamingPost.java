@@ -0,0 +1,95 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import eu.clarussecure.dataoperations.DataOperationCommand;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class StreamingPost implements Iterator<DataOperationCommand>, AutoCloseable {
+    // Incremental encryption of the rows of a post operation.
+    // A background thread reads the rows in batches and encrypts each batch with HomomorphicModule.post,
+    // while the caller iterates over the resulting commands (one per batch, in the order of the rows).
+    // At most maxPendingBatches encrypted batches are kept: when the caller does not consume them,
+    // the encryption stops until it does, so the memory does not depend on the number of rows.
+
+    // Marker of the end of the stream
+    private static final List<DataOperationCommand> END = new ArrayList<>();
+
+    private final BlockingQueue<List<DataOperationCommand>> batches;
+    private final Thread producer;
+    private volatile RuntimeException failure;
+    private Iterator<DataOperationCommand> current;
+    private boolean finished;
+
+    public StreamingPost(HomomorphicModule module, String[] attributeNames, Iterator<String[]> rows, int batchSize,
+            int maxPendingBatches) {
+        if (batchSize <= 0 || maxPendingBatches <= 0) {
+            throw new IllegalArgumentException("The batch size and the number of pending batches must be positive");
+        }
+        this.batches = new ArrayBlockingQueue<>(maxPendingBatches);
+        this.producer = new Thread(() -> {
+            try {
+                while (rows.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    List<String[]> batch = new ArrayList<>(batchSize);
+                    while (batch.size() < batchSize && rows.hasNext()) {
+                        batch.add(rows.next());
+                    }
+                    // Blocks while the queue is full (backpressure)
+                    this.batches.put(module.post(attributeNames, batch.toArray(new String[batch.size()][])));
+                }
+            } catch (InterruptedException e) {
+                // The stream was closed
+                return;
+            } catch (RuntimeException e) {
+                this.failure = e;
+            }
+            try {
+                this.batches.put(END);
+            } catch (InterruptedException e) {
+                // The stream was closed
+            }
+        }, "clarus-homomorphic-post");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!this.finished && (this.current == null || !this.current.hasNext())) {
+            try {
+                List<DataOperationCommand> batch = this.batches.take();
+                if (batch == END) {
+                    this.finished = true;
+                } else {
+                    this.current = batch.iterator();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the encrypted rows", e);
+            }
+        }
+        if (this.finished && this.failure != null) {
+            throw this.failure;
+        }
+        return !this.finished;
+    }
+
+    @Override
+    public DataOperationCommand next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.current.next();
+    }
+
+    @Override
+    public void close() {
+        // Stop encrypting the remaining rows
+        this.producer.interrupt();
+        this.batches.clear();
+        this.finished = true;
+    }
+}
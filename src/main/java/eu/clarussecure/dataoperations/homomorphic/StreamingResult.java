@@ -0,0 +1,57 @@
+package eu.clarussecure.dataoperations.homomorphic;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+
+public class StreamingResult implements Iterator<String[]> {
+    // Lazily decrypted rows of a get operation.
+    // The rows are read from the cloud response in batches, and each batch is decrypted (concurrently) only when
+    // the caller requests its first row. The rows are returned in the order of the response.
+
+    private final String[] attributeNames;
+    private final Iterator<String[]> contents;
+    private final int batchSize;
+    private final UnaryOperator<String[][]> decryption;
+    private String[][] batch = new String[0][];
+    private int position;
+
+    public StreamingResult(String[] attributeNames, Iterator<String[]> contents, int batchSize,
+            UnaryOperator<String[][]> decryption) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.attributeNames = attributeNames;
+        this.contents = contents;
+        this.batchSize = batchSize;
+        this.decryption = decryption;
+    }
+
+    public String[] getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.position < this.batch.length || this.contents.hasNext();
+    }
+
+    @Override
+    public String[] next() {
+        if (this.position == this.batch.length) {
+            if (!this.contents.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // Read and decrypt the next batch
+            List<String[]> rows = new ArrayList<>(this.batchSize);
+            while (rows.size() < this.batchSize && this.contents.hasNext()) {
+                rows.add(this.contents.next());
+            }
+            this.batch = this.decryption.apply(rows.toArray(new String[rows.size()][]));
+            this.position = 0;
+        }
+        return this.batch[this.position++];
+    }
+}
@@ -0,0 +1,27 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+public class Between extends Select {
+    // Selects the numeric values between two bounds (included), given as "lower,upper"
+    private final double lower;
+    private final double upper;
+
+    public Between(String threshold) {
+        this.threshold = threshold;
+        String[] bounds = threshold.split(",");
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("The operator 'between' requires two bounds: " + threshold);
+        }
+        this.lower = Double.parseDouble(bounds[0].trim());
+        this.upper = Double.parseDouble(bounds[1].trim());
+    }
+
+    @Override
+    public boolean select(String data) {
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        return data >= this.lower && data <= this.upper;
+    }
+}
@@ -7,12 +7,22 @@ public class Equals extends Select {
 
     @Override
     public boolean select(String data) {
-        // This class has been . implemented for numeric values
-        // First, parse the arguments
-        double numericData = Double.parseDouble(data);
-        double numericThreshold = Double.parseDouble(this.threshold);
+        // This class has been implemented for numeric values
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        return data == this.numericThreshold();
+    }
 
-        // Compare the data and return the result of the comparison
-        return numericData == numericThreshold;
+    @Override
+    public boolean comparesStrings() {
+        return true;
+    }
+
+    @Override
+    public boolean selectString(String data) {
+        return this.threshold.equals(data);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+public class Greater extends Select {
+    // Selects the numeric values greater than the threshold
+
+    public Greater(String threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean select(String data) {
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        return data > this.numericThreshold();
+    }
+}
@@ -8,10 +8,12 @@ public class GreaterOrEqual extends Select {
 
     @Override
     public boolean select(String data) {
-        double numericData = Double.parseDouble(data);
-        double numericThreshold = Double.parseDouble(this.threshold);
-
-        return numericData >= numericThreshold;
+        // This class has been implemented for numeric values
+        return this.select(Select.parse(data));
     }
 
+    @Override
+    public boolean select(double data) {
+        return data >= this.numericThreshold();
+    }
 }
@@ -0,0 +1,50 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class In extends Select {
+    // Selects the values found in a list, given as "value1,value2,..."
+    // The numeric values are compared as numbers, the values of a non-numeric column as Strings
+    private final double[] values; // Items of the list that are numbers (in order)
+    private final Set<String> strings = new HashSet<>();
+
+    public In(String threshold) {
+        this.threshold = threshold;
+        List<Double> numbers = new ArrayList<>();
+        for (String value : threshold.split(",")) {
+            this.strings.add(value.trim());
+            try {
+                numbers.add(Double.parseDouble(value.trim()));
+            } catch (NumberFormatException e) {
+                // This item can only match the values of a non-numeric column
+            }
+        }
+        this.values = numbers.stream().mapToDouble(Double::doubleValue).map(value -> value == 0 ? 0.0 : value)
+                .sorted().toArray();
+    }
+
+    @Override
+    public boolean select(String data) {
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        // 0.0 and -0.0 are equal values
+        return Arrays.binarySearch(this.values, data == 0 ? 0.0 : data) >= 0;
+    }
+
+    @Override
+    public boolean comparesStrings() {
+        return true;
+    }
+
+    @Override
+    public boolean selectString(String data) {
+        return data != null && this.strings.contains(data);
+    }
+}
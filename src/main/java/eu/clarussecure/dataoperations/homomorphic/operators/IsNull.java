@@ -0,0 +1,21 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+public class IsNull extends Select {
+    // Selects the null values (the threshold is ignored)
+
+    @Override
+    public boolean select(String data) {
+        return data == null;
+    }
+
+    @Override
+    public boolean comparesStrings() {
+        return true;
+    }
+
+    @Override
+    public boolean select(double data) {
+        // The null values of the numeric columns are parsed as NaN
+        return Double.isNaN(data);
+    }
+}
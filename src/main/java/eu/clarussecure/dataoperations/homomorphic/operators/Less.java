@@ -0,0 +1,19 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+public class Less extends Select {
+    // Selects the numeric values lower than the threshold
+
+    public Less(String threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean select(String data) {
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        return data < this.numericThreshold();
+    }
+}
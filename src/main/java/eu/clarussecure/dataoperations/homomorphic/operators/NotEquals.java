@@ -0,0 +1,30 @@
+package eu.clarussecure.dataoperations.homomorphic.operators;
+
+public class NotEquals extends Select {
+    // Selects the numeric values different from the threshold (but not the null values)
+
+    public NotEquals(String threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean select(String data) {
+        return this.select(Select.parse(data));
+    }
+
+    @Override
+    public boolean select(double data) {
+        return !Double.isNaN(data) && data != this.numericThreshold();
+    }
+
+    @Override
+    public boolean comparesStrings() {
+        return true;
+    }
+
+    @Override
+    public boolean selectString(String data) {
+        // The null values are not selected
+        return data != null && !this.threshold.equals(data);
+    }
+}
@@ -7,9 +7,60 @@ public abstract class Select {
     // This is the funciton that will decide whether a data is selected or not
     // It MUST be implemented by all the sub classes.
     protected String threshold;
+    private Double numericThreshold;
 
     public abstract boolean select(String data);
 
+    // Variant for the numeric values already parsed by the caller
+    public boolean select(double data) {
+        return this.select(Double.toString(data));
+    }
+
+    // Variants for a batch of rows of a column: the given rows (row numbers in the values) are filtered in place,
+    // and the number of selected rows is returned
+    public int select(double[] values, int[] rows, int count) {
+        int selected = 0;
+        for (int k = 0; k < count; k++) {
+            if (this.select(values[rows[k]])) {
+                rows[selected++] = rows[k];
+            }
+        }
+        return selected;
+    }
+
+    public int select(String[] values, int[] rows, int count) {
+        int selected = 0;
+        for (int k = 0; k < count; k++) {
+            if (this.selectString(values[rows[k]])) {
+                rows[selected++] = rows[k];
+            }
+        }
+        return selected;
+    }
+
+    // Whether the values of a non-numeric column can be selected (they are compared as Strings)
+    public boolean comparesStrings() {
+        return false;
+    }
+
+    // Variant for the values of a non-numeric column (only used if comparesStrings())
+    public boolean selectString(String data) {
+        return this.select(data);
+    }
+
+    protected double numericThreshold() {
+        // The threshold is parsed only once
+        if (this.numericThreshold == null) {
+            this.numericThreshold = Double.parseDouble(this.threshold);
+        }
+        return this.numericThreshold;
+    }
+
+    protected static double parse(String data) {
+        // The null values are parsed as NaN, so they are not selected by the comparisons
+        return data != null ? Double.parseDouble(data) : Double.NaN;
+    }
+
     public static Select getInstance(String operator, String threshold) {
         // Extend this list to implement more operators
         switch (operator) {
@@ -19,6 +70,20 @@ public abstract class Select {
             return new Equals(threshold);
         case ">=":
             return new GreaterOrEqual(threshold);
+        case ">":
+            return new Greater(threshold);
+        case "<":
+            return new Less(threshold);
+        case "<=":
+            return new LessOrEqual(threshold);
+        case "!=":
+            return new NotEquals(threshold);
+        case "between":
+            return new Between(threshold);
+        case "in":
+            return new In(threshold);
+        case "is null":
+            return new IsNull();
         default:
             throw new UnsupportedOperationException("The operator '" + operator + "' is not supported.");
         }
@@ -0,0 +1,112 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+
+public class CloudColumn {
+    // Values of a single column of the HomomorphicCloud.
+    // The values are decoded once, when they are inserted: the ciphertexts of the homomorphic columns are kept as
+    // BigIntegers and the plaintext numbers as doubles, next to the original Strings (returned by the queries).
+
+    private final String name;
+    private final boolean homomorphic;
+    private String[] values = new String[16];
+    private BigInteger[] ciphertexts; // Only for the homomorphic columns
+    private double[] numbers = new double[16]; // NaN for the null values
+    private boolean numeric; // All the (non null) values are numbers
+    private int size;
+
+    public CloudColumn(String name) {
+        this.name = name;
+        this.homomorphic = name.endsWith("_homoenc");
+        this.numeric = !this.homomorphic;
+        if (this.homomorphic) {
+            this.ciphertexts = new BigInteger[16];
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isHomomorphic() {
+        return this.homomorphic;
+    }
+
+    public boolean isNumeric() {
+        return this.numeric;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public String get(int row) {
+        return this.values[row];
+    }
+
+    public BigInteger getCiphertext(int row) {
+        return this.ciphertexts[row];
+    }
+
+    public double getNumber(int row) {
+        return this.numbers[row];
+    }
+
+    // The arrays of the values (only the first size() values are set), to loop over them
+    public String[] getValues() {
+        return this.values;
+    }
+
+    public double[] getNumbers() {
+        return this.numbers;
+    }
+
+    public void add(String value) {
+        this.add(value, null);
+    }
+
+    public void add(String value, BigInteger ciphertext) {
+        // The ciphertext can be given when it is already decoded (e.g. from a binary column)
+        if (this.size == this.values.length) {
+            int capacity = this.values.length * 2;
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.numbers = Arrays.copyOf(this.numbers, capacity);
+            if (this.homomorphic) {
+                this.ciphertexts = Arrays.copyOf(this.ciphertexts, capacity);
+            }
+        }
+        this.values[this.size] = value;
+        if (this.homomorphic) {
+            this.ciphertexts[this.size] = ciphertext != null ? ciphertext : this.decode(value);
+        } else if (this.numeric) {
+            this.numbers[this.size] = this.parse(value);
+        }
+        this.size++;
+    }
+
+    private BigInteger decode(String value) {
+        // The values stored in the cloud are B64-encoded
+        // (except the homomorphic geometric objects, which are not ciphertexts)
+        try {
+            return value != null ? new BigInteger(Base64.getDecoder().decode(value)) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private double parse(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            // This is not a numeric column: its values will be compared as Strings, which only the (in)equality
+            // operators support
+            this.numeric = false;
+            return Double.NaN;
+        }
+    }
+}
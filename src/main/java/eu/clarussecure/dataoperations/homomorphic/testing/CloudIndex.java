@@ -0,0 +1,92 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class CloudIndex {
+    // Index of the rows of a numeric CloudColumn, by value.
+    // A hash index finds the rows equal to a value, a sorted index also finds the rows greater or equal to it.
+    // The rows are given in the order of the table.
+
+    private final boolean sorted;
+    private final Map<Double, Rows> rows;
+
+    public CloudIndex(boolean sorted) {
+        this.sorted = sorted;
+        this.rows = sorted ? new TreeMap<>() : new HashMap<>();
+    }
+
+    public boolean isSorted() {
+        return this.sorted;
+    }
+
+    public void add(double value, int row) {
+        // The null values (NaN) are not selected by any comparison
+        if (!Double.isNaN(value)) {
+            this.rows.computeIfAbsent(this.key(value), key -> new Rows()).add(row);
+        }
+    }
+
+    public int[] lookup(String operator, String threshold) {
+        // Rows matching the given comparison, or null if the index cannot be used
+        if (threshold == null) {
+            return null;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(threshold);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        switch (operator) {
+        case "=":
+            Rows equal = this.rows.get(this.key(value));
+            return equal != null ? equal.toArray() : new int[0];
+        case ">=":
+            return this.sorted ? this.merge(((NavigableMap<Double, Rows>) this.rows).tailMap(value, true)) : null;
+        default:
+            return null;
+        }
+    }
+
+    private Double key(double value) {
+        // 0.0 and -0.0 are equal values
+        return value == 0 ? 0.0 : value;
+    }
+
+    private int[] merge(Map<Double, Rows> selected) {
+        int count = 0;
+        for (Rows rows : selected.values()) {
+            count += rows.size;
+        }
+        int[] merged = new int[count];
+        int position = 0;
+        for (Rows rows : selected.values()) {
+            System.arraycopy(rows.rows, 0, merged, position, rows.size);
+            position += rows.size;
+        }
+        // Back to the order of the table
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static class Rows {
+        // Rows having the same value (in increasing order, since the rows are only appended)
+        private int[] rows = new int[1];
+        private int size;
+
+        private void add(int row) {
+            if (this.size == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.size * 2);
+            }
+            this.rows[this.size++] = row;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(this.rows, this.size);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.homomorphic.CompositeCriteria;
+import eu.clarussecure.dataoperations.homomorphic.operators.Select;
+import java.util.Arrays;
+
+public abstract class CloudPredicate {
+    // Criteria compiled (once per query) against the columns of a HomomorphicCloud.
+    // A predicate filters a batch of rows in place: the thresholds are already parsed and the selectors loop over
+    // the decoded values of the columns.
+
+    // Keep the given rows (in the first count positions) that match the predicate, and return their number
+    public abstract int filter(int[] rows, int count);
+
+    public static CloudPredicate compile(Criteria[] criteria, String[] columns, CloudColumn[] data) {
+        // The given criteria are combined with the "and" semantics
+        CloudPredicate[] predicates = new CloudPredicate[criteria != null ? criteria.length : 0];
+        for (int k = 0; k < predicates.length; k++) {
+            predicates[k] = compile(criteria[k], columns, data);
+        }
+        return new And(predicates);
+    }
+
+    public static CloudPredicate compile(Criteria criterion, String[] columns, CloudColumn[] data) {
+        if (criterion instanceof CompositeCriteria) {
+            Criteria[] composed = ((CompositeCriteria) criterion).getCriteria();
+            CloudPredicate[] predicates = new CloudPredicate[composed.length];
+            for (int k = 0; k < composed.length; k++) {
+                predicates[k] = compile(composed[k], columns, data);
+            }
+            return criterion.getOperator().equals("or") ? new Or(predicates) : new And(predicates);
+        }
+        int c = Arrays.asList(columns).indexOf(criterion.getAttributeName());
+        if (c < 0) {
+            // The criteria on attributes that are not stored are ignored
+            return new And(new CloudPredicate[0]);
+        }
+        Select selector = Select.getInstance(criterion.getOperator(), criterion.getValue());
+        if (!data[c].isNumeric() && !selector.comparesStrings()) {
+            throw new UnsupportedOperationException("The operator '" + criterion.getOperator()
+                    + "' requires a numeric attribute: " + criterion.getAttributeName());
+        }
+        return new Comparison(data[c], selector);
+    }
+
+    private static class Comparison extends CloudPredicate {
+        private final CloudColumn column;
+        private final Select selector;
+
+        private Comparison(CloudColumn column, Select selector) {
+            this.column = column;
+            this.selector = selector;
+        }
+
+        @Override
+        public int filter(int[] rows, int count) {
+            // The numeric values are compared without parsing them again
+            return this.column.isNumeric() ? this.selector.select(this.column.getNumbers(), rows, count)
+                    : this.selector.select(this.column.getValues(), rows, count);
+        }
+    }
+
+    private static class And extends CloudPredicate {
+        private final CloudPredicate[] predicates;
+
+        private And(CloudPredicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public int filter(int[] rows, int count) {
+            // Each predicate only sees the rows selected by the previous ones
+            for (int k = 0; k < this.predicates.length && count > 0; k++) {
+                count = this.predicates[k].filter(rows, count);
+            }
+            return count;
+        }
+    }
+
+    private static class Or extends CloudPredicate {
+        private final CloudPredicate[] predicates;
+
+        private Or(CloudPredicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public int filter(int[] rows, int count) {
+            // Each predicate only sees the rows not selected by the previous ones
+            boolean[] selected = new boolean[count];
+            int[] remaining = new int[count]; // Positions (in rows) of the rows not selected yet
+            int remainingCount = count;
+            for (int k = 0; k < count; k++) {
+                remaining[k] = k;
+            }
+            int[] batch = new int[count];
+            for (CloudPredicate predicate : this.predicates) {
+                if (remainingCount == 0) {
+                    break;
+                }
+                for (int k = 0; k < remainingCount; k++) {
+                    batch[k] = rows[remaining[k]];
+                }
+                int matched = predicate.filter(batch, remainingCount);
+                // The filtered rows keep their order: find their positions among the remaining ones
+                int next = 0, kept = 0;
+                for (int k = 0; k < remainingCount; k++) {
+                    if (next < matched && rows[remaining[k]] == batch[next]) {
+                        selected[remaining[k]] = true;
+                        next++;
+                    } else {
+                        remaining[kept++] = remaining[k];
+                    }
+                }
+                remainingCount = kept;
+            }
+            int selectedCount = 0;
+            for (int k = 0; k < count; k++) {
+                if (selected[k]) {
+                    rows[selectedCount++] = rows[k];
+                }
+            }
+            return selectedCount;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import eu.clarussecure.dataoperations.Criteria;
 import eu.clarussecure.dataoperations.DataOperation;
 import eu.clarussecure.dataoperations.DataOperationCommand;
 import eu.clarussecure.dataoperations.DataOperationResult;
+import eu.clarussecure.dataoperations.homomorphic.HomomorphicCommand;
 import eu.clarussecure.dataoperations.homomorphic.HomomorphicCriteria;
 import eu.clarussecure.dataoperations.homomorphic.HomomorphicModule;
 import eu.clarussecure.dataoperations.homomorphic.HomomorphicRemoteOperationCommand;
@@ -68,7 +69,7 @@ public class Demo {
 
         // Query the cloud
         for (DataOperationCommand command : commandsPost) {
-            cloud.addRows(command.getProtectedContents());
+            cloud.addRows(command.getProtectedContents(), ((HomomorphicCommand) command).getCiphertextColumns());
         }
 
         // Show the content of the cloud
@@ -86,7 +87,7 @@ public class Demo {
 
         // Query the cloud
         for (DataOperationCommand command : commandsPost2) {
-            cloud.addRow(command.getProtectedContents()[0]);
+            cloud.addRows(command.getProtectedContents(), ((HomomorphicCommand) command).getCiphertextColumns());
         }
 
         // Show the content of the cloud
@@ -263,6 +264,18 @@ public class Demo {
         System.out.print(aux.decodeAndPrintCloudContents());
         System.out.println("********************************************");
 
+        // CASE 7: Homomorphic Operation on an attribute that is not requested
+        // The result would have no column to be given in: the module must reject the request
+        crit3 = HomomorphicCriteria.getInstance("+", "meuseDB/meuse/copper");
+        try {
+            encryption.get(new String[] { "meuseDB/meuse/gid" }, new Criteria[] { crit3 });
+            throw new IllegalStateException("The operation on an attribute that is not requested was accepted");
+        } catch (UnsupportedOperationException e) {
+            System.out.println("****************REJECTED-7******************");
+            System.out.println(e.getMessage());
+            System.out.println("********************************************");
+        }
+
     }
 
     public static void performanceTest(DataOperation encryption, String[] qualifiedAttribs, String[][] data) {
@@ -281,7 +294,7 @@ public class Demo {
 
         // Query the cloud
         for (DataOperationCommand command : commandsPost) {
-            cloud.addRows(command.getProtectedContents());
+            cloud.addRows(command.getProtectedContents(), ((HomomorphicCommand) command).getCiphertextColumns());
         }
 
         System.out.println("POST time = " + (tf - ti));
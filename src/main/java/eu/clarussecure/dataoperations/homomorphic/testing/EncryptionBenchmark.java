@@ -0,0 +1,86 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import eu.clarussecure.dataoperations.homomorphic.RandomizerPool;
+import eu.clarussecure.encryption.paillier.KeyPair;
+import eu.clarussecure.encryption.paillier.Paillier;
+import eu.clarussecure.encryption.paillier.PublicKey;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class EncryptionBenchmark {
+    // Microbenchmark of the Paillier encryption paths:
+    // - the encryption of the Paillier library
+    // - the generic path of the RandomizerPool (g^m mod n^2), with a key where g != n+1
+    // - the fast path of the RandomizerPool (1 + m*n mod n^2), with a key where g = n+1
+    // The randomizers are precomputed in both RandomizerPool cases, so only the g^m part differs.
+    public final static int[] KEY_LENGTHS = { 1024, 2048, 3072 };
+    public final static int ENCRYPTIONS = 300;
+    public final static int WARMUP = 50;
+
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService refiller = Executors.newSingleThreadExecutor();
+        SecureRandom random = new SecureRandom();
+
+        // Plaintexts: small integers (as stored by the module) and full-size values
+        BigInteger[] smallValues = new BigInteger[ENCRYPTIONS];
+        for (int i = 0; i < ENCRYPTIONS; i++) {
+            smallValues[i] = BigInteger.valueOf(random.nextInt(Integer.MAX_VALUE));
+        }
+
+        System.out.println("bits\tvalues\tlibrary(us)\tgeneric(us)\tfast(us)\tspeedup");
+        for (int keyLength : KEY_LENGTHS) {
+            KeyPair keys = Paillier.Keygen(keyLength);
+            BigInteger n = keys.getPublic().getN();
+            BigInteger nSquared = n.multiply(n);
+            // Two equivalent Public Keys: g = n+1 and g = (n+1) * s^n mod n^2 (a valid generic generator)
+            PublicKey simpleKey = new PublicKey(n, n.add(BigInteger.ONE));
+            BigInteger s = new BigInteger(n.bitLength() - 1, random);
+            PublicKey genericKey = new PublicKey(n, n.add(BigInteger.ONE).multiply(s.modPow(n, nSquared)).mod(nSquared));
+
+            BigInteger[] largeValues = new BigInteger[ENCRYPTIONS];
+            for (int i = 0; i < ENCRYPTIONS; i++) {
+                largeValues[i] = new BigInteger(n.bitLength() - 1, random);
+            }
+
+            for (BigInteger[] values : new BigInteger[][] { smallValues, largeValues }) {
+                double library = timeLibrary(simpleKey, values);
+                double generic = timePool(new RandomizerPool(genericKey, 0, ENCRYPTIONS + WARMUP, refiller), values);
+                double fast = timePool(new RandomizerPool(simpleKey, 0, ENCRYPTIONS + WARMUP, refiller), values);
+                System.out.println(String.format("%d\t%s\t%.1f\t\t%.1f\t\t%.1f\t\t%.1fx", keyLength,
+                        values == smallValues ? "31 bits" : "full", library, generic, fast, generic / fast));
+            }
+        }
+        refiller.shutdownNow();
+    }
+
+    private static double timeLibrary(PublicKey pk, BigInteger[] values) {
+        for (int i = 0; i < WARMUP; i++) {
+            Paillier.encrypt(pk, values[i]);
+        }
+        long ti = System.nanoTime();
+        for (BigInteger value : values) {
+            Paillier.encrypt(pk, value);
+        }
+        long tf = System.nanoTime();
+        return (tf - ti) / 1000.0 / values.length;
+    }
+
+    private static double timePool(RandomizerPool pool, BigInteger[] values) throws InterruptedException {
+        // Wait until all the randomizers are precomputed
+        while (pool.available() < ENCRYPTIONS + WARMUP) {
+            Thread.sleep(100);
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            pool.encrypt(values[i]);
+        }
+        long ti = System.nanoTime();
+        for (BigInteger value : values) {
+            pool.encrypt(value);
+        }
+        long tf = System.nanoTime();
+        pool.close();
+        return (tf - ti) / 1000.0 / values.length;
+    }
+}
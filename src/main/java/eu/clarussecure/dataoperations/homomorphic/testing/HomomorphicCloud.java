@@ -1,184 +1,289 @@
 package eu.clarussecure.dataoperations.homomorphic.testing;
 
 import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.homomorphic.CiphertextColumn;
 import eu.clarussecure.dataoperations.homomorphic.HomomorphicRemoteOperationCommand;
 import eu.clarussecure.dataoperations.homomorphic.operators.Select;
-import eu.clarussecure.encryption.paillier.EncryptedInteger;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.concurrent.RecursiveTask;
 
 public class HomomorphicCloud {
     // Dommy implementation for a cloud
     // The implementation is a table, saving columns and rows.
+    // The table is stored by columns, and each value is decoded only once, when it is inserted (see CloudColumn).
 
-    private final List<String[]> data;
+    // Secondary indexes on the plaintext numeric columns can be created to find the selected rows without
+    // scanning the whole table.
+
+    private final CloudColumn[] data;
+    private final CloudIndex[] indexes; // null for the columns without index
     private final String[] columns; // attributes
+    private int rows;
 
     public HomomorphicCloud(String[] columns) {
         this.columns = columns;
-        this.data = new ArrayList<>();
+        this.data = new CloudColumn[columns.length];
+        this.indexes = new CloudIndex[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            this.data[c] = new CloudColumn(columns[c]);
+        }
+    }
+
+    public void createHashIndex(String column) {
+        // Index the rows by value, for the "=" criteria
+        this.createIndex(column, new CloudIndex(false));
+    }
+
+    public void createSortedIndex(String column) {
+        // Index the rows by value in order, for the "=" and ">=" criteria
+        this.createIndex(column, new CloudIndex(true));
+    }
+
+    private void createIndex(String column, CloudIndex index) {
+        int c = Arrays.asList(this.columns).indexOf(column);
+        if (c < 0 || !this.data[c].isNumeric()) {
+            throw new IllegalArgumentException("Only the plaintext numeric columns can be indexed: " + column);
+        }
+        for (int i = 0; i < this.rows; i++) {
+            index.add(this.data[c].getNumber(i), i);
+        }
+        this.indexes[c] = index;
     }
 
     public void addRow(String[] row) {
         // It is assumed that the given arrays contains the columns in order!
-        this.data.add(row);
+        for (int c = 0; c < this.columns.length; c++) {
+            this.data[c].add(row[c]);
+        }
+        this.indexRow();
+    }
+
+    private void indexRow() {
+        // Add the last row to the indexes
+        for (int c = 0; c < this.columns.length; c++) {
+            if (this.indexes[c] != null) {
+                if (this.data[c].isNumeric()) {
+                    this.indexes[c].add(this.data[c].getNumber(this.rows), this.rows);
+                } else {
+                    // A non-numeric value was inserted: the index cannot be used anymore
+                    this.indexes[c] = null;
+                }
+            }
+        }
+        this.rows++;
     }
 
     public void addRows(String[][] rows) {
         // Each array will be added to the data
-        this.data.addAll(Arrays.asList(rows));
+        for (String[] row : rows) {
+            this.addRow(row);
+        }
+    }
+
+    public void addRows(String[][] rows, CiphertextColumn[] ciphertextColumns) {
+        // The ciphertexts of the columns using the binary encoding are stored B64-encoded, like the others
+        // (but they are not decoded again)
+        CiphertextColumn[] binaryColumns = new CiphertextColumn[this.columns.length];
+        if (ciphertextColumns != null) {
+            for (CiphertextColumn column : ciphertextColumns) {
+                binaryColumns[Arrays.asList(this.columns).indexOf(column.getProtectedAttributeName())] = column;
+            }
+        }
+        for (int i = 0; i < rows.length; i++) {
+            for (int c = 0; c < this.columns.length; c++) {
+                if (binaryColumns[c] != null) {
+                    this.data[c].add(binaryColumns[c].getBase64(i), binaryColumns[c].get(i));
+                } else {
+                    this.data[c].add(rows[i][c]);
+                }
+            }
+            this.indexRow();
+        }
     }
 
     public String[][] getRows(String[] protectedAttribNames, Criteria[] criteria) {
         // Select the columns regarding the required attribute names
-        List<String[]> results = new ArrayList<>();
-
-        // First, parse the selection criteria and prepare the Select instances
-        Map<String, List<Select>> selectorsSet = new HashMap<>();
-
-        // Initialize the selection criteria
-        if (criteria == null) {
-            // There is no criteria, use the Identity Function
-            List<Select> selectors = selectorsSet.get("all");
-            if (selectors == null) {
-                selectors = new ArrayList<>();
-                selectorsSet.put("all", selectors);
-            }
-            selectors.add(Select.getInstance("id", "")); // No threshold is required for the identity
-        } else {
-            // There are criteria. Build the selectors
-            for (Criteria crit : criteria) {
-                // Get the selectors of the attribute
-                List<Select> selectors = selectorsSet.get(crit.getAttributeName());
-                // Create the list of it does not exist
-                if (selectors == null) {
-                    selectors = new ArrayList<>();
-                    selectorsSet.put(crit.getAttributeName(), selectors);
-                }
-                // Add the current selector to the list
-                selectors.add(Select.getInstance(crit.getOperator(), crit.getValue()));
-            }
-        }
-
-        // Second, process each column that will be selected
-        for (String[] row : data) { // Select each row of the loaded data
-            int p = 0; // column position in the results table
-            String[] selectedRow = new String[protectedAttribNames.length]; // new result row
-            boolean selected = true; // to decide if the row should be included in teh result or not
-
-            for (int i = 0; i < columns.length; i++) { // for each stored column name
-                // Get the selectors of this attribute
-                List<Select> attributeSelectors = selectorsSet.get(columns[i]);
-                // if no selectors were found, simply insert the identity
-                if (attributeSelectors == null)
-                    attributeSelectors = new ArrayList<>();
-                // Do not forget the filters applied to "all";
-                if (selectorsSet.get("all") != null) {
-                    attributeSelectors.addAll(selectorsSet.get("all"));
-                }
+        int[] selectedRows = this.selectRows(criteria);
+        int[] projection = this.project(protectedAttribNames);
+        String[][] results = new String[selectedRows.length][];
+        for (int k = 0; k < selectedRows.length; k++) {
+            results[k] = this.projectRow(selectedRows[k], projection, protectedAttribNames.length);
+        }
+        return results;
+    }
 
-                // Evaluate each attribute selector
-                for (Select selector : attributeSelectors) {
-                    // Decide if the row should be selected or not
-                    // NOTE - This line gives the "and" semantics to multiple criteria
-                    selected = selected && selector.select(row[i]);
-                }
-                // Determine if this column is requested or not
-                for (String protectedAttribName : protectedAttribNames) { //for each requested column
-                    if (columns[i].equals(protectedAttribName)) { // check if this is a requested column
-                        // Copy the value on position i (data stored in the requested column) in the found row
-                        // to the row i, column p on the results
-                        selectedRow[p] = row[i];
-                        p++; // move to the left on the results table
-                        break;
-                    }
+    private int[] selectRows(Criteria[] criteria) {
+        // Find the rows matching all the criteria
+        // NOTE - This gives the "and" semantics to multiple criteria
+        // First, the most selective index (if any) gives the candidate rows
+        int[] candidates = null;
+        if (criteria != null) {
+            for (Criteria crit : criteria) {
+                int c = Arrays.asList(this.columns).indexOf(crit.getAttributeName());
+                int[] indexed = c >= 0 && this.indexes[c] != null
+                        ? this.indexes[c].lookup(crit.getOperator(), crit.getValue()) : null;
+                if (indexed != null && (candidates == null || indexed.length < candidates.length)) {
+                    candidates = indexed;
                 }
             }
-            // Include the row only if the selector says so
-            if (selected) {
-                results.add(selectedRow);
+        }
+        if (candidates == null) {
+            candidates = new int[this.rows];
+            for (int i = 0; i < this.rows; i++) {
+                candidates[i] = i;
+            }
+        }
+
+        // Second, compile the criteria and filter the candidate rows
+        CloudPredicate predicate = CloudPredicate.compile(criteria, this.columns, this.data);
+        return Arrays.copyOf(candidates, predicate.filter(candidates, candidates.length));
+    }
+
+    private int[] project(String[] protectedAttribNames) {
+        // Find the stored columns that are requested (in the order of the table)
+        List<Integer> projection = new ArrayList<>();
+        for (int c = 0; c < this.columns.length; c++) {
+            if (Arrays.asList(protectedAttribNames).contains(this.columns[c])) {
+                projection.add(c);
             }
         }
-        return results.toArray(new String[results.size()][]);
+        return projection.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private String[] projectRow(int row, int[] projection, int length) {
+        String[] selectedRow = new String[length]; // new result row
+        for (int p = 0; p < projection.length; p++) {
+            selectedRow[p] = this.data[projection[p]].get(row);
+        }
+        return selectedRow;
     }
 
     public String[][] performHomomorphicComputation(String[] protectedAttribNames, Criteria[] criteria,
             HomomorphicRemoteOperationCommand command) {
-        // Select the columns regarding the required attribute names
-        List<String[]> involvedRows;
-        String[] result;
-        int i;
-
         // First, retrieve the involved rows.
-        involvedRows = new ArrayList<>(Arrays.asList(this.getRows(protectedAttribNames, criteria)));
+        int[] involvedRows = this.selectRows(criteria);
 
-        // Second, perform the homomorphic operation
-        // Find the index of the involved column
-        for (i = 0; i < protectedAttribNames.length; i++) {
-            if (protectedAttribNames[i].equals(command.getInvolvedColumn())) {
+        // Second, check the homomorphic operations
+        // Find the index of the involved column of each operation
+        int operations = command.getOperationCount();
+        int[] indexes = new int[operations];
+        for (int o = 0; o < operations; o++) {
+            indexes[o] = Arrays.asList(this.columns).indexOf(command.getInvolvedColumn(o));
+            switch (command.getOperation(o)) {
+            case "+":
+            case "count":
+            case "avg":
                 break;
+            default:
+                throw new UnsupportedOperationException(
+                        "Homomorphic operation not supported: " + command.getOperation(o));
+            }
+        }
+        // Third, aggregate the involved rows by group (a single group without GROUP BY), in a single pass
+        // for all the operations
+        // The ciphertexts were already decoded when they were stored
+        // The null values are neither summed nor counted
+        int[] groupColumns = new int[command.getGroupBy().length];
+        for (int g = 0; g < groupColumns.length; g++) {
+            groupColumns[g] = Arrays.asList(this.columns).indexOf(command.getGroupBy()[g]);
+        }
+        Map<List<String>, Group> groups = new LinkedHashMap<>(); // In the order of the first row of each group
+        for (int row : involvedRows) {
+            String[] key = new String[groupColumns.length];
+            for (int g = 0; g < groupColumns.length; g++) {
+                key[g] = groupColumns[g] >= 0 ? this.data[groupColumns[g]].get(row) : null;
+            }
+            Group group = groups.computeIfAbsent(Arrays.asList(key), k -> new Group(row, operations));
+            for (int o = 0; o < operations; o++) {
+                BigInteger ciphertext = this.data[indexes[o]].getCiphertext(row);
+                if (ciphertext != null) {
+                    group.add(o, ciphertext);
+                }
             }
         }
-        final int index = i;
-        // Reduce the involved rows into a single one.
-        // NOTE: The other columns will retain a single value of the set
-        // (one row, but it cannot be assured which, since Java can parallelize the reduce)
-        // Create an auxiliary array with a zero encoded in the 
-        String[] auxStart = involvedRows.get(0).clone();
-        BigInteger auxZero = command.getEncryptedZero().getValue();
-        auxStart[index] = Base64.getEncoder().encodeToString(auxZero.toByteArray());
-        result = involvedRows.stream().reduce(auxStart.clone(), // Initial result creator
-                (String[] row1, String[] row2) -> { // Reducing function: it takes two String arrays (rows) and reduce them homomorphically
-                    try {
-                        // Create the BigInteger object
-                        // The values stored in the cloud are B64-encoded
-                        BigInteger bigIntValueRow1 = new BigInteger(Base64.getDecoder().decode(row1[index]));
-                        BigInteger bigIntValueRow2 = new BigInteger(Base64.getDecoder().decode(row2[index]));
-
-                        // Create the EncryptedInteger objects to operate the values;
-                        EncryptedInteger int1 = new EncryptedInteger(bigIntValueRow1, command.getPublicKey());
-                        EncryptedInteger int2 = new EncryptedInteger(bigIntValueRow2, command.getPublicKey());
-
-                        // Operate both values according to the given operation
-                        BigInteger homoResult = null;
-                        switch (command.getOperation()) {
-                        case "+":
-                            homoResult = int1.sum(int2).getValue();
-                            break;
-                        default:
-                            throw new UnsupportedOperationException(
-                                    "Homomorphic operation not supported: " + command.getOperation());
-                        }
-                        String[] res = row1.clone();
-                        // Recover the bytes of the result BigInteger and B64-encode them
-                        res[index] = Base64.getEncoder().encodeToString(homoResult.toByteArray());
-                        return res;
-                    } catch (Exception e) {
-                        e.printStackTrace();
+        if (groups.isEmpty() && groupColumns.length == 0) {
+            // The aggregate of no rows is still returned
+            groups.put(new ArrayList<>(), new Group(-1, operations));
+        }
+
+        // Fourth, sum the groups concurrently (each operation with its own key)
+        // The encrypted zero is included in each sum, so the results are randomized
+        BigInteger[] nSquared = new BigInteger[operations];
+        for (int o = 0; o < operations; o++) {
+            if (!command.getOperation(o).equals("count")) {
+                BigInteger n = command.getPublicKey(o).getN();
+                nSquared[o] = n.multiply(n);
+            }
+        }
+        List<HomomorphicSum[]> sums = new ArrayList<>();
+        for (Group group : groups.values()) {
+            HomomorphicSum[] groupSums = new HomomorphicSum[operations];
+            for (int o = 0; o < operations; o++) {
+                if (!command.getOperation(o).equals("count")) {
+                    groupSums[o] = new HomomorphicSum(group.operands[o], 0, group.counts[o], nSquared[o]);
+                    groupSums[o].fork(); // In the common pool
+                }
+            }
+            sums.add(groupSums);
+        }
+
+        // Reduce the rows of each group into a single one.
+        // NOTE: Without GROUP BY, the other columns will retain the values of the first row (or null if no row
+        // is involved). With GROUP BY, only the grouped columns are given.
+        int[] projection = this.project(protectedAttribNames);
+        String[][] results = new String[groups.size()][];
+        int k = 0;
+        for (Map.Entry<List<String>, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            String[] result;
+            if (groupColumns.length == 0) {
+                result = Arrays.copyOf(group.firstRow >= 0
+                        ? this.projectRow(group.firstRow, projection, protectedAttribNames.length)
+                        : new String[protectedAttribNames.length], command.getCountIndex(operations - 1) + 1);
+            } else {
+                result = new String[command.getCountIndex(operations - 1) + 1];
+                for (int g = 0; g < groupColumns.length; g++) {
+                    int groupIndex = Arrays.asList(protectedAttribNames).indexOf(command.getGroupBy()[g]);
+                    if (groupIndex >= 0) {
+                        result[groupIndex] = entry.getKey().get(g);
                     }
-                    return null;
-                });
-        return new String[][] { result };
+                }
+            }
+            for (int o = 0; o < operations; o++) {
+                // A count has no sum, so nothing is decrypted
+                int resultIndex = Arrays.asList(protectedAttribNames).indexOf(command.getInvolvedColumn(o));
+                result[resultIndex] = null;
+                if (sums.get(k)[o] != null) {
+                    BigInteger homoResult = sums.get(k)[o].join().multiply(command.getEncryptedZero(o).getValue())
+                            .mod(nSquared[o]);
+                    // Recover the bytes of the result BigInteger and B64-encode them
+                    result[resultIndex] = Base64.getEncoder().encodeToString(homoResult.toByteArray());
+                }
+                // The numbers of involved values follow the attributes
+                result[command.getCountIndex(o)] = Integer.toString(group.counts[o]);
+            }
+            results[k++] = result;
+        }
+        return results;
     }
 
     public String decodeAndPrintCloudContents() {
         // This method is used to show the encoded versions of the clouds.
         String ret = Arrays.deepToString(columns) + "\n";
 
-        for (String[] row : data) {
-            String[] newRow = row.clone();
-            for (int i = 0; i < row.length; i++) {
-                if (this.columns[i].endsWith("_homoenc")) {
-                    BigInteger integer = new BigInteger(Base64.getDecoder().decode(row[i]));
-                    newRow[i] = integer.longValue() + "";
+        for (int i = 0; i < this.rows; i++) {
+            String[] newRow = new String[this.columns.length];
+            for (int c = 0; c < this.columns.length; c++) {
+                if (this.data[c].isHomomorphic() && this.data[c].getCiphertext(i) != null) {
+                    newRow[c] = this.data[c].getCiphertext(i).longValue() + "";
                 } else {
-                    newRow[i] = row[i];
+                    newRow[c] = this.data[c].get(i);
                 }
             }
             ret += Arrays.deepToString(newRow) + "\n";
@@ -190,9 +295,68 @@ public class HomomorphicCloud {
         // This method is used to show the non-encoded versions of the clouds.
         String ret = Arrays.deepToString(columns) + "\n";
 
-        for (String[] row : data) {
+        for (int i = 0; i < this.rows; i++) {
+            String[] row = new String[this.columns.length];
+            for (int c = 0; c < this.columns.length; c++) {
+                row[c] = this.data[c].get(i);
+            }
             ret += Arrays.deepToString(row) + "\n";
         }
         return ret;
     }
+
+    private static class Group {
+        // Rows of a GROUP BY having the same values of the grouped columns, with the operands of each operation
+        private final int firstRow;
+        private final BigInteger[][] operands;
+        private final int[] counts;
+
+        private Group(int firstRow, int operations) {
+            this.firstRow = firstRow;
+            this.operands = new BigInteger[operations][16];
+            this.counts = new int[operations];
+        }
+
+        private void add(int operation, BigInteger ciphertext) {
+            if (this.counts[operation] == this.operands[operation].length) {
+                this.operands[operation] = Arrays.copyOf(this.operands[operation], this.counts[operation] * 2);
+            }
+            this.operands[operation][this.counts[operation]++] = ciphertext;
+        }
+    }
+
+    private static class HomomorphicSum extends RecursiveTask<BigInteger> {
+        // Sum of Paillier ciphertexts (i.e. their product modulo n^2), computed as a fork/join tree:
+        // the operands are split in halves until the chunks are small enough to be multiplied sequentially.
+        private static final long serialVersionUID = 1L;
+        private static final int SEQUENTIAL_OPERANDS = 256;
+
+        private final BigInteger[] operands;
+        private final int from;
+        private final int to;
+        private final BigInteger nSquared;
+
+        private HomomorphicSum(BigInteger[] operands, int from, int to, BigInteger nSquared) {
+            this.operands = operands;
+            this.from = from;
+            this.to = to;
+            this.nSquared = nSquared;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (this.to - this.from <= SEQUENTIAL_OPERANDS) {
+                BigInteger product = BigInteger.ONE;
+                for (int i = this.from; i < this.to; i++) {
+                    product = product.multiply(this.operands[i]).mod(this.nSquared);
+                }
+                return product;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            HomomorphicSum left = new HomomorphicSum(this.operands, this.from, middle, this.nSquared);
+            left.fork();
+            BigInteger right = new HomomorphicSum(this.operands, middle, this.to, this.nSquared).compute();
+            return left.join().multiply(right).mod(this.nSquared);
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import eu.clarussecure.dataoperations.homomorphic.PaillierCrtKey;
+import eu.clarussecure.dataoperations.homomorphic.ParallelKeyGenerator;
+import eu.clarussecure.encryption.paillier.EncryptedInteger;
+import eu.clarussecure.encryption.paillier.KeyPair;
+import eu.clarussecure.encryption.paillier.Paillier;
+import java.math.BigInteger;
+
+public class KeyGenerationBenchmark {
+    // Wall-clock time of the key generation: Paillier library vs ParallelKeyGenerator
+    public final static int[] KEY_LENGTHS = { 2048, 3072, 4096 };
+    public final static int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ParallelKeyGenerator generator = new ParallelKeyGenerator(parallelism);
+
+        // Warm up both paths
+        Paillier.Keygen(1024);
+        generator.generate(1024);
+
+        System.out.println("Parallelism = " + parallelism);
+        System.out.println("bits\tlibrary(ms)\tparallel(ms)\tspeedup");
+        for (int keyLength : KEY_LENGTHS) {
+            long library = 0, parallel = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long ti = System.currentTimeMillis();
+                Paillier.Keygen(keyLength);
+                long tf = System.currentTimeMillis();
+                library += tf - ti;
+
+                ti = System.currentTimeMillis();
+                PaillierCrtKey key = generator.generate(keyLength);
+                tf = System.currentTimeMillis();
+                parallel += tf - ti;
+
+                // Check the generated key works with the Paillier library
+                checkKey(key.getKeyPair());
+            }
+            System.out.println(String.format("%d\t%.1f\t\t%.1f\t\t%.1fx", keyLength, (double) library / ITERATIONS,
+                    (double) parallel / ITERATIONS, (double) library / parallel));
+        }
+        generator.shutdown();
+    }
+
+    private static void checkKey(KeyPair keys) {
+        BigInteger value = BigInteger.valueOf(123456789);
+        EncryptedInteger encrypted = Paillier.encrypt(keys.getPublic(), value);
+        if (!Paillier.decrypt(keys.getSecret(), encrypted).equals(value)) {
+            throw new IllegalStateException("The generated key is not valid");
+        }
+    }
+}
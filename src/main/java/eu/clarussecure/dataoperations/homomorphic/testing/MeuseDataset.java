@@ -0,0 +1,118 @@
+package eu.clarussecure.dataoperations.homomorphic.testing;
+
+import java.util.Locale;
+import java.util.Random;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class MeuseDataset {
+    // Synthetic datasets following the schema of the meuse table (and its security policy):
+    // the heavy metal concentrations are protected with the homomorphic module, the other attributes are public.
+    // The values are drawn from ranges similar to the ones of the original dataset, so a table of any size can
+    // be generated without the CSV file.
+    public final static String TABLE = "meuseDB/meuse/";
+    public final static String DATA_ID = "meuse";
+    public final static String[] COLUMNS = { "gid", "cadmium", "copper", "lead", "zinc", "elev", "dist", "om",
+            "ffreq", "soil", "lime", "landuse", "dist.m", "geom" };
+    public final static String[] HOMOMORPHIC_COLUMNS = { "cadmium", "copper", "lead", "zinc" };
+    public final static String[] LANDUSES = { "Aa", "Ab", "Ag", "Ah", "Am", "B", "Bw", "DEN", "Fh", "Fw", "Ga",
+            "SPO", "STA", "Tv", "W" };
+    // Bounding box of the meuse points (EPSG:28992)
+    private final static double MIN_X = 178605, MAX_X = 181390, MIN_Y = 329714, MAX_Y = 333611;
+    private final static int SRID = 28992;
+
+    private final Random random;
+
+    public MeuseDataset(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static String[] attributeNames() {
+        String[] names = new String[COLUMNS.length];
+        for (int j = 0; j < COLUMNS.length; j++) {
+            names[j] = TABLE + COLUMNS[j];
+        }
+        return names;
+    }
+
+    public static Document policy() throws ParserConfigurationException {
+        Document policy = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = policy.createElement("policy");
+        policy.appendChild(root);
+
+        for (String column : COLUMNS) {
+            boolean homomorphic = isHomomorphic(column);
+            Element attribute = policy.createElement("attribute");
+            attribute.setAttribute("name", TABLE + column);
+            attribute.setAttribute("attribute_type", homomorphic ? "confidential" : "public");
+            attribute.setAttribute("data_type", column.equals("geom") ? "geometric_object"
+                    : homomorphic || column.equals("gid") ? "integer" : "string");
+            root.appendChild(attribute);
+        }
+
+        Element confidential = policy.createElement("attribute_type");
+        confidential.setAttribute("type", "confidential");
+        confidential.setAttribute("protection", "homomorphic");
+        confidential.setAttribute("id_key", DATA_ID);
+        root.appendChild(confidential);
+        Element unprotected = policy.createElement("attribute_type");
+        unprotected.setAttribute("type", "public");
+        unprotected.setAttribute("protection", "none");
+        root.appendChild(unprotected);
+        return policy;
+    }
+
+    public static boolean isHomomorphic(String column) {
+        for (String homomorphicColumn : HOMOMORPHIC_COLUMNS) {
+            if (homomorphicColumn.equals(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized String[][] rows(int firstGid, int rows) {
+        // Generate the given number of rows, with consecutive gids starting at firstGid
+        String[][] data = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = this.row(firstGid + i);
+        }
+        return data;
+    }
+
+    private String[] row(int gid) {
+        double x = MIN_X + this.random.nextDouble() * (MAX_X - MIN_X);
+        double y = MIN_Y + this.random.nextDouble() * (MAX_Y - MIN_Y);
+        double dist = this.random.nextDouble() * 0.88;
+        return new String[] { Integer.toString(gid), Integer.toString(this.between(0, 18)),
+                Integer.toString(this.between(14, 128)), Integer.toString(this.between(37, 654)),
+                Integer.toString(this.between(113, 1839)),
+                String.format(Locale.ROOT, "%.3f", 5.18 + this.random.nextDouble() * 5),
+                String.format(Locale.ROOT, "%.6f", dist),
+                String.format(Locale.ROOT, "%.1f", 1 + this.random.nextDouble() * 16.5),
+                Integer.toString(this.between(1, 3)), Integer.toString(this.between(1, 3)),
+                Integer.toString(this.between(0, 1)), LANDUSES[this.random.nextInt(LANDUSES.length)],
+                Integer.toString((int) (dist * 1200)), this.point(x, y) };
+    }
+
+    private int between(int min, int max) {
+        return min + this.random.nextInt(max - min + 1);
+    }
+
+    private String point(double x, double y) {
+        // Hex-encoded EWKB of a point (little endian, with SRID), as stored by PostGIS
+        StringBuilder ewkb = new StringBuilder("0101000020");
+        this.appendLittleEndian(ewkb, SRID, 4);
+        this.appendLittleEndian(ewkb, Double.doubleToRawLongBits(x), 8);
+        this.appendLittleEndian(ewkb, Double.doubleToRawLongBits(y), 8);
+        return ewkb.toString();
+    }
+
+    private void appendLittleEndian(StringBuilder hex, long value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            hex.append(String.format("%02X", (value >>> (8 * i)) & 0xff));
+        }
+    }
+}